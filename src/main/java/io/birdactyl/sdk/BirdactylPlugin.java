@@ -11,26 +11,37 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImplBase {
     private static final Gson gson = new Gson();
+    private static final int HEADER_HEADROOM = 64 << 10;
     private final String id;
     private String name;
     private final String version;
     private final Map<String, Function<Event, EventResult>> eventHandlers = new ConcurrentHashMap<>();
-    private final Map<String, Function<Request, Response>> routeHandlers = new ConcurrentHashMap<>();
+    private final Router router = new Router();
     private final Map<String, Runnable> scheduleHandlers = new ConcurrentHashMap<>();
     private final Map<String, MixinRegistration> mixinHandlers = new ConcurrentHashMap<>();
     private final List<RouteInfo> routes = new ArrayList<>();
     private final List<ScheduleInfo> schedules = new ArrayList<>();
     private final List<MixinInfo> mixins = new ArrayList<>();
+    private final Map<Dispatcher.Kind, Dispatcher> dispatchers = new ConcurrentHashMap<>();
     private final CountDownLatch readyLatch = new CountDownLatch(1);
     private PanelAPI api;
     private PanelAPIAsync asyncApi;
+    private PanelCache cache;
+    private DirectHttp directHttp;
+    private final SingleFlight flights = new SingleFlight();
     private PanelServiceGrpc.PanelServiceStub asyncStub;
     private Executor asyncExecutor = ForkJoinPool.commonPool();
     private File dataDir;
+    private LogIndex logIndex;
+    private KVCache.Builder kvConfig = KVCache.builder();
+    private KVCache kv;
+    private LocalStore store;
     private boolean useDataDir = false;
+    private int maxBodySize = Integer.MAX_VALUE;
     private Runnable onStartCallback;
 
     private static class MixinRegistration {
@@ -46,6 +57,9 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
         this.id = id;
         this.name = id;
         this.version = version;
+        for (Dispatcher.Kind kind : Dispatcher.Kind.values()) {
+            dispatchers.put(kind, Dispatcher.direct());
+        }
     }
 
     public BirdactylPlugin setName(String n) {
@@ -58,11 +72,67 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
         return this;
     }
 
+    public BirdactylPlugin maxBodySize(int bytes) {
+        this.maxBodySize = bytes;
+        return this;
+    }
+
+    public BirdactylPlugin cache(PanelCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public BirdactylPlugin directHttp(DirectHttp http) {
+        this.directHttp = http;
+        return this;
+    }
+
+    public BirdactylPlugin kv(KVCache.Builder config) {
+        this.kvConfig = config;
+        return this;
+    }
+
+    public synchronized KVCache kv() {
+        if (kv == null) kv = kvConfig.build(api);
+        return kv;
+    }
+
+    public synchronized LocalStore store() {
+        if (store == null) store = LocalStore.open(dataPath("store"));
+        return store;
+    }
+
+    private synchronized void closeStores() {
+        try {
+            if (kv != null) kv.close();
+        } catch (Exception e) {
+            System.err.println("[" + id + "] KV flush on shutdown failed: " + e.getMessage());
+        }
+        try {
+            if (store != null) store.close();
+        } catch (Exception e) {
+            System.err.println("[" + id + "] local store close on shutdown failed: " + e.getMessage());
+        }
+    }
+
+    public SingleFlight coalescing() {
+        return flights;
+    }
+
     public BirdactylPlugin asyncExecutor(Executor executor) {
         this.asyncExecutor = executor;
         return this;
     }
 
+    public BirdactylPlugin dispatcher(Dispatcher.Kind kind, Dispatcher dispatcher) {
+        dispatchers.put(kind, dispatcher);
+        return this;
+    }
+
+    public Dispatcher dispatcher(Dispatcher.Kind kind) {
+        return dispatchers.get(kind);
+    }
+
     public BirdactylPlugin onStart(Runnable callback) {
         this.onStartCallback = callback;
         return this;
@@ -73,7 +143,7 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
     }
 
     public void route(String method, String path, Function<Request, Response> handler) {
-        routeHandlers.put(method + ":" + path, handler);
+        router.add(method, path, handler);
         routes.add(RouteInfo.newBuilder().setMethod(method).setPath(path).build());
     }
 
@@ -121,7 +191,7 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
 
     public ConsoleStream streamConsole(ConsoleStream.Builder builder) {
         ConsoleStream stream = builder.build();
-        asyncStub.streamConsole(builder.buildRequest(), stream.createObserver());
+        stream.open(asyncStub);
         return stream;
     }
 
@@ -129,6 +199,27 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
         return new ConsoleStream.Builder(serverId);
     }
 
+    public ConsoleMux consoleMux() {
+        return consoleMux(new ConsoleMux.Builder());
+    }
+
+    public ConsoleMux consoleMux(ConsoleMux.Builder builder) {
+        return builder.build(asyncStub);
+    }
+
+    public ConsoleRecorder.Builder consoleRecorder() {
+        return ConsoleRecorder.builder(new File(dataDir, "console"));
+    }
+
+    public LogTailer.Builder logTailer(String serverId) {
+        return LogTailer.builder(api, serverId);
+    }
+
+    public synchronized LogIndex logIndex() {
+        if (logIndex == null) logIndex = new LogIndex(new File(dataDir, "logindex"));
+        return logIndex;
+    }
+
     public File dataDir() {
         return dataDir;
     }
@@ -172,14 +263,25 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
                 })
                 .build();
 
-        api = new PanelAPI(PanelServiceGrpc.newBlockingStub(channel));
-        asyncApi = new PanelAPIAsync(PanelServiceGrpc.newFutureStub(channel), asyncExecutor);
         asyncStub = PanelServiceGrpc.newStub(channel);
+        PanelServiceGrpc.PanelServiceFutureStub futureStub = PanelServiceGrpc.newFutureStub(channel);
+        api = new PanelAPI(PanelServiceGrpc.newBlockingStub(channel), asyncStub).withCoalescing(flights, futureStub);
+        asyncApi = new PanelAPIAsync(futureStub, asyncStub, asyncExecutor).withCoalescing(flights);
+        if (cache != null) {
+            api.withCache(cache);
+            asyncApi.withCache(cache);
+        }
+        if (directHttp != null) asyncApi.withDirectHttp(directHttp);
 
-        io.grpc.Server server = ServerBuilder.forPort(port)
-                .addService(this)
-                .build()
-                .start();
+        ServerBuilder<?> serverBuilder = ServerBuilder.forPort(port).addService(this);
+        if (dispatchers.values().stream().noneMatch(Dispatcher::isDirect)) {
+            serverBuilder.directExecutor();
+        }
+        if (maxBodySize != Integer.MAX_VALUE) {
+            // the 413 below only fires after gRPC has buffered the message; this rejects anything far over the limit on the wire
+            serverBuilder.maxInboundMessageSize((int) Math.min(Integer.MAX_VALUE, (long) maxBodySize + HEADER_HEADROOM));
+        }
+        io.grpc.Server server = serverBuilder.build().start();
 
         System.out.println("[" + id + "] v" + version + " listening on port " + port);
 
@@ -189,17 +291,23 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
             onStartCallback.run();
         }
 
-        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.shutdown();
+            dispatchers.values().forEach(Dispatcher::shutdown);
+            closeStores();
+        }));
         server.awaitTermination();
     }
 
     @Override
     public void getInfo(Empty request, StreamObserver<PluginInfo> response) {
+        Set<String> events = new LinkedHashSet<>(eventHandlers.keySet());
+        if (cache != null) events.addAll(cache.invalidationEvents());
         PluginInfo.Builder builder = PluginInfo.newBuilder()
                 .setId(id)
                 .setName(name)
                 .setVersion(version)
-                .addAllEvents(eventHandlers.keySet())
+                .addAllEvents(events)
                 .addAllRoutes(routes)
                 .addAllSchedules(schedules)
                 .addAllMixins(mixins);
@@ -211,10 +319,17 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
 
     @Override
     public void onEvent(io.birdactyl.sdk.proto.Event request, StreamObserver<EventResponse> response) {
+        dispatch(Dispatcher.Kind.EVENT, response, () -> handleEvent(request, response),
+                () -> EventResponse.newBuilder().setAllow(true).build());
+    }
+
+    private void handleEvent(io.birdactyl.sdk.proto.Event request, StreamObserver<EventResponse> response) {
         Function<Event, EventResult> handler = eventHandlers.get(request.getType());
+        Event event = new Event(request.getType(), request.getDataMap(), request.getSync());
+        if (cache != null) cache.onEvent(event);
         EventResult result = EventResult.allow();
         if (handler != null) {
-            result = handler.apply(new Event(request.getType(), request.getDataMap(), request.getSync()));
+            result = handler.apply(event);
         }
         response.onNext(EventResponse.newBuilder().setAllow(result.isAllowed()).setMessage(result.getMessage()).build());
         response.onCompleted();
@@ -222,34 +337,42 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
 
     @Override
     public void onHTTP(HTTPRequest request, StreamObserver<HTTPResponse> response) {
-        Function<Request, Response> handler = routeHandlers.get(request.getMethod() + ":" + request.getPath());
-        if (handler == null) {
-            for (Map.Entry<String, Function<Request, Response>> entry : routeHandlers.entrySet()) {
-                String[] parts = entry.getKey().split(":", 2);
-                if ((parts[0].equals("*") || parts[0].equals(request.getMethod())) && matchPath(parts[1], request.getPath())) {
-                    handler = entry.getValue();
-                    break;
-                }
-            }
-        }
+        dispatch(Dispatcher.Kind.HTTP, response, () -> handleHTTP(request, response),
+                () -> toProto(Response.error(503, "overloaded")));
+    }
+
+    private void handleHTTP(HTTPRequest request, StreamObserver<HTTPResponse> response) {
+        Router.Match match = router.match(request.getMethod(), request.getPath());
 
         Response resp;
-        if (handler != null) {
-            resp = handler.apply(new Request(request));
+        if (request.getBody().size() > maxBodySize) {
+            resp = Response.error(413, "request body too large");
+        } else if (match.found()) {
+            resp = match.handler.apply(new Request(request, match.route.extract(request.getPath())));
+        } else if (match.methodNotAllowed()) {
+            resp = Response.error(405, "method not allowed").header("Allow", match.allow);
         } else {
             resp = Response.error(404, "not found");
         }
 
-        response.onNext(HTTPResponse.newBuilder()
+        response.onNext(toProto(resp));
+        response.onCompleted();
+    }
+
+    private static HTTPResponse toProto(Response resp) {
+        return HTTPResponse.newBuilder()
                 .setStatus(resp.getStatus())
                 .putAllHeaders(resp.getHeaders())
-                .setBody(com.google.protobuf.ByteString.copyFrom(resp.getBody()))
-                .build());
-        response.onCompleted();
+                .setBody(resp.getBodyBytes())
+                .build();
     }
 
     @Override
     public void onSchedule(ScheduleRequest request, StreamObserver<Empty> response) {
+        dispatch(Dispatcher.Kind.SCHEDULE, response, () -> handleSchedule(request, response), Empty::getDefaultInstance);
+    }
+
+    private void handleSchedule(ScheduleRequest request, StreamObserver<Empty> response) {
         Runnable handler = scheduleHandlers.get(request.getScheduleId());
         if (handler != null) {
             handler.run();
@@ -259,8 +382,12 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void onMixin(io.birdactyl.sdk.proto.MixinRequest request, StreamObserver<io.birdactyl.sdk.proto.MixinResponse> response) {
+        dispatch(Dispatcher.Kind.MIXIN, response, () -> handleMixin(request, response),
+                () -> io.birdactyl.sdk.proto.MixinResponse.newBuilder().setAction(io.birdactyl.sdk.proto.MixinResponse.Action.NEXT).build());
+    }
+
+    private void handleMixin(io.birdactyl.sdk.proto.MixinRequest request, StreamObserver<io.birdactyl.sdk.proto.MixinResponse> response) {
         MixinRegistration reg = mixinHandlers.get(request.getTarget());
         if (reg == null) {
             response.onNext(io.birdactyl.sdk.proto.MixinResponse.newBuilder()
@@ -270,13 +397,7 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
             return;
         }
 
-        Map<String, Object> input = gson.fromJson(request.getInput().toStringUtf8(), Map.class);
-        Map<String, Object> chainData = null;
-        if (!request.getChainData().isEmpty()) {
-            chainData = gson.fromJson(request.getChainData().toStringUtf8(), Map.class);
-        }
-
-        MixinContext ctx = new MixinContext(request.getTarget(), request.getRequestId(), input, chainData);
+        MixinContext ctx = new MixinContext(request.getTarget(), request.getRequestId(), request.getInput(), request.getChainData());
         MixinResult result = reg.handler.handle(ctx);
 
         io.birdactyl.sdk.proto.MixinResponse.Builder resp = io.birdactyl.sdk.proto.MixinResponse.newBuilder();
@@ -284,7 +405,9 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
         switch (result.getAction()) {
             case NEXT:
                 resp.setAction(io.birdactyl.sdk.proto.MixinResponse.Action.NEXT);
-                if (result.getModifiedInput() != null) {
+                if (result.getPatch() != null && request.getAcceptsPatch()) {
+                    resp.setInputPatch(result.getPatch().toJson());
+                } else if (result.getModifiedInput() != null) {
                     resp.setModifiedInput(com.google.protobuf.ByteString.copyFromUtf8(gson.toJson(result.getModifiedInput())));
                 }
                 break;
@@ -312,18 +435,24 @@ public abstract class BirdactylPlugin extends PluginServiceGrpc.PluginServiceImp
         response.onCompleted();
     }
 
+    private <T> void dispatch(Dispatcher.Kind kind, StreamObserver<T> response, Runnable body, Supplier<T> overloaded) {
+        dispatchers.get(kind).execute(() -> {
+            try {
+                body.run();
+            } catch (Throwable t) {
+                response.onError(Status.INTERNAL.withDescription(String.valueOf(t.getMessage())).withCause(t).asRuntimeException());
+            }
+        }, () -> {
+            response.onNext(overloaded.get());
+            response.onCompleted();
+        });
+    }
+
     @Override
     public void shutdown(Empty request, StreamObserver<Empty> response) {
         System.out.println("[" + id + "] shutdown");
+        closeStores();
         response.onNext(Empty.getDefaultInstance());
         response.onCompleted();
     }
-
-    private boolean matchPath(String pattern, String path) {
-        if (pattern.equals(path)) return true;
-        if (pattern.endsWith("*")) {
-            return path.startsWith(pattern.substring(0, pattern.length() - 1));
-        }
-        return false;
-    }
 }
@@ -0,0 +1,70 @@
+package io.birdactyl.sdk;
+
+import com.google.protobuf.ByteString;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class BufferPool {
+    private static final int INITIAL_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_SIZE = 4 * 1024 * 1024;
+    private static final int MAX_POOLED = 64;
+    private static final Queue<Buffer> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool() {}
+
+    static Buffer acquire() {
+        Buffer b = pool.poll();
+        if (b == null) return new Buffer();
+        pooled.decrementAndGet();
+        b.count = 0;
+        b.released.set(false);
+        return b;
+    }
+
+    static final class Buffer extends OutputStream {
+        private byte[] buf = new byte[INITIAL_SIZE];
+        private int count;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private void ensure(int extra) {
+            int needed = count + extra;
+            if (needed > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(needed, buf.length << 1));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        int size() { return count; }
+
+        ByteString copy() {
+            return ByteString.copyFrom(buf, 0, count);
+        }
+
+        void release() {
+            if (!released.compareAndSet(false, true)) return;
+            if (buf.length > MAX_RETAINED_SIZE) return;
+            if (pooled.incrementAndGet() > MAX_POOLED) {
+                pooled.decrementAndGet();
+                return;
+            }
+            pool.offer(this);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package io.birdactyl.sdk;
+
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+public class BulkOperation<T> {
+    private static final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "birdactyl-bulk-retry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @FunctionalInterface
+    public interface Action<T> {
+        CompletableFuture<T> apply(PanelAPIAsync api, String serverId);
+
+        default boolean idempotent() { return true; }
+    }
+
+    public static Action<Void> restart() { return PanelAPIAsync::restartServer; }
+    public static Action<Void> start() { return PanelAPIAsync::startServer; }
+    public static Action<Void> stop() { return PanelAPIAsync::stopServer; }
+    public static Action<Void> kill() { return PanelAPIAsync::killServer; }
+    public static Action<Void> reinstall() { return once(PanelAPIAsync::reinstallServer); }
+    public static Action<Void> backup(String name) { return once((api, id) -> api.createBackup(id, name)); }
+
+    public static <T> Action<T> once(Action<T> action) {
+        return new Action<T>() {
+            @Override
+            public CompletableFuture<T> apply(PanelAPIAsync api, String serverId) { return action.apply(api, serverId); }
+
+            @Override
+            public boolean idempotent() { return false; }
+        };
+    }
+
+    public static class Result<T> {
+        public final String serverId, nodeId;
+        public final T value;
+        public final Throwable error;
+        public final int attempts;
+
+        Result(String serverId, String nodeId, T value, Throwable error, int attempts) {
+            this.serverId = serverId; this.nodeId = nodeId; this.value = value;
+            this.error = error; this.attempts = attempts;
+        }
+
+        public boolean isSuccess() { return error == null; }
+    }
+
+    private final class Task {
+        final String serverId, nodeId;
+        int attempts;
+
+        Task(String serverId, String nodeId) {
+            this.serverId = serverId; this.nodeId = nodeId;
+        }
+    }
+
+    private final class NodeQueue {
+        final ArrayDeque<Task> pending = new ArrayDeque<>();
+        int active;
+    }
+
+    private final PanelAPIAsync api;
+    private final Action<T> action;
+    private final int perNode, global, maxAttempts;
+    private final Duration backoff;
+    private final Consumer<Result<T>> onResult;
+    private final Map<String, NodeQueue> nodes = new LinkedHashMap<>();
+    private final List<Result<T>> results = new ArrayList<>();
+    private final Queue<Result<T>> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private final CompletableFuture<List<Result<T>>> done = new CompletableFuture<>();
+    private Iterator<NodeQueue> cursor;
+    private int total, active, succeeded, failed, retried;
+    private long startedAt, finishedAt;
+    private volatile boolean cancelled;
+
+    private BulkOperation(Builder<T> b) {
+        this.api = b.api; this.action = b.action; this.perNode = b.perNode; this.global = b.global;
+        this.maxAttempts = b.retries + 1; this.backoff = b.backoff; this.onResult = b.onResult;
+    }
+
+    public static <T> Builder<T> builder(PanelAPIAsync api, Action<T> action) {
+        return new Builder<>(api, action);
+    }
+
+    BulkOperation<T> run(Collection<String> serverIds, int pageSize) {
+        Set<String> wanted = new LinkedHashSet<>(serverIds);
+        synchronized (this) {
+            total = wanted.size();
+            startedAt = System.nanoTime();
+        }
+        if (wanted.isEmpty()) {
+            finish();
+            return this;
+        }
+        if (wanted.size() <= pageSize) lookup(wanted);
+        else scan(wanted, pageSize);
+        return this;
+    }
+
+    private void lookup(Set<String> wanted) {
+        for (String id : wanted) {
+            CompletableFuture<PanelAPI.Server> f;
+            try {
+                f = api.getServer(id);
+            } catch (RuntimeException e) {
+                f = CompletableFuture.failedFuture(e);
+            }
+            f.whenComplete((s, err) -> {
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                if (cause == null && !cancelled) {
+                    enqueue(Collections.singletonList(s));
+                    return;
+                }
+                synchronized (this) {
+                    if (cancelled) complete(new Task(id, ""), null, new CancellationException("bulk operation cancelled"));
+                    else complete(new Task(id, ""), null, cause);
+                }
+                deliver();
+                if (isDone()) finish();
+            });
+        }
+    }
+
+    private void scan(Set<String> wanted, int pageSize) {
+        List<PanelAPI.Server> found = new ArrayList<>();
+        api.servers(pageSize).publisher().subscribe(new Flow.Subscriber<PanelAPI.Server>() {
+            private Flow.Subscription sub;
+
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                sub = s;
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(PanelAPI.Server s) {
+                if (!cancelled) {
+                    if (wanted.contains(s.id)) found.add(s);
+                    return;
+                }
+                sub.cancel();
+                synchronized (BulkOperation.this) {
+                    for (String id : wanted) complete(new Task(id, ""), null, new CancellationException("bulk operation cancelled"));
+                }
+                deliver();
+                finish();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                synchronized (BulkOperation.this) {
+                    for (String id : wanted) complete(new Task(id, ""), null, t);
+                }
+                deliver();
+                finish();
+            }
+
+            @Override
+            public void onComplete() {
+                Set<String> missing = new LinkedHashSet<>(wanted);
+                for (PanelAPI.Server s : found) missing.remove(s.id);
+                synchronized (BulkOperation.this) {
+                    for (String id : missing) {
+                        complete(new Task(id, ""), null, Status.NOT_FOUND.withDescription("server " + id + " not found").asRuntimeException());
+                    }
+                }
+                deliver();
+                enqueue(found);
+            }
+        });
+    }
+
+    BulkOperation<T> runServers(Collection<PanelAPI.Server> servers) {
+        Map<String, PanelAPI.Server> unique = new LinkedHashMap<>();
+        for (PanelAPI.Server s : servers) unique.putIfAbsent(s.id, s);
+        synchronized (this) {
+            total = unique.size();
+            startedAt = System.nanoTime();
+        }
+        enqueue(unique.values());
+        return this;
+    }
+
+    private void enqueue(Collection<PanelAPI.Server> servers) {
+        synchronized (this) {
+            for (PanelAPI.Server s : servers) {
+                nodes.computeIfAbsent(s.nodeId, k -> new NodeQueue()).pending.add(new Task(s.id, s.nodeId));
+            }
+            if (cancelled) drainCancelled();
+        }
+        deliver();
+        pump();
+    }
+
+    private void pump() {
+        List<Task> launch = new ArrayList<>();
+        synchronized (this) {
+            int idle = 0;
+            while (active < global && !nodes.isEmpty() && idle < nodes.size()) {
+                if (cursor == null || !cursor.hasNext()) cursor = nodes.values().iterator();
+                NodeQueue q = cursor.next();
+                if (q.active >= perNode || q.pending.isEmpty()) {
+                    idle++;
+                    continue;
+                }
+                idle = 0;
+                Task t = q.pending.poll();
+                q.active++;
+                active++;
+                t.attempts++;
+                launch.add(t);
+            }
+        }
+        for (Task t : launch) execute(t);
+        if (isDone()) finish();
+    }
+
+    private void execute(Task t) {
+        CompletableFuture<T> f;
+        try {
+            f = action.apply(api, t.serverId);
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        f.whenComplete((v, err) -> {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            boolean retry;
+            synchronized (this) {
+                NodeQueue q = nodes.get(t.nodeId);
+                q.active--;
+                active--;
+                retry = cause != null && !cancelled && t.attempts < maxAttempts && action.idempotent() && retryable(cause);
+                if (retry) {
+                    retried++;
+                } else {
+                    complete(t, v, cause);
+                }
+            }
+            deliver();
+            if (retry) {
+                long delay = backoff.toMillis() << Math.min(t.attempts - 1, 10);
+                retryTimer.schedule(() -> requeue(t), delay, TimeUnit.MILLISECONDS);
+            }
+            pump();
+        });
+    }
+
+    private void requeue(Task t) {
+        synchronized (this) {
+            if (cancelled) {
+                complete(t, null, new CancellationException("bulk operation cancelled"));
+            } else {
+                nodes.get(t.nodeId).pending.addFirst(t);
+            }
+        }
+        deliver();
+        pump();
+    }
+
+    private static boolean retryable(Throwable cause) {
+        Status.Code code = Status.fromThrowable(cause).getCode();
+        return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED;
+    }
+
+    private void complete(Task t, T value, Throwable error) {
+        Result<T> r = new Result<>(t.serverId, t.nodeId, value, error, t.attempts);
+        results.add(r);
+        if (error == null) succeeded++;
+        else failed++;
+        if (onResult != null) outbox.add(r);
+    }
+
+    private void deliver() {
+        while (!outbox.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                Result<T> r;
+                while ((r = outbox.poll()) != null) {
+                    try {
+                        onResult.accept(r);
+                    } catch (Exception e) {
+                        System.err.println("Bulk result handler error: " + e.getMessage());
+                    }
+                }
+            } finally {
+                delivering.set(false);
+            }
+        }
+    }
+
+    private void drainCancelled() {
+        for (NodeQueue q : nodes.values()) {
+            Task t;
+            while ((t = q.pending.poll()) != null) complete(t, null, new CancellationException("bulk operation cancelled"));
+        }
+    }
+
+    private synchronized boolean isDone() {
+        return succeeded + failed >= total;
+    }
+
+    private void finish() {
+        deliver();
+        List<Result<T>> snapshot;
+        synchronized (this) {
+            if (done.isDone()) return;
+            finishedAt = System.nanoTime();
+            snapshot = Collections.unmodifiableList(new ArrayList<>(results));
+        }
+        done.complete(snapshot);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            drainCancelled();
+        }
+        deliver();
+        if (isDone()) finish();
+    }
+
+    public boolean isCancelled() { return cancelled; }
+    public CompletableFuture<List<Result<T>>> done() { return done; }
+
+    public synchronized int total() { return total; }
+    public synchronized int completed() { return succeeded + failed; }
+    public synchronized int succeeded() { return succeeded; }
+    public synchronized int failed() { return failed; }
+    public synchronized int inFlight() { return active; }
+    public synchronized int retries() { return retried; }
+
+    public synchronized double progress() {
+        return total == 0 ? 1.0 : (double) (succeeded + failed) / total;
+    }
+
+    public synchronized double throughput() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        double secs = (end - startedAt) / 1e9;
+        return secs <= 0 ? 0 : (succeeded + failed) / secs;
+    }
+
+    public static class Builder<T> {
+        private final PanelAPIAsync api;
+        private final Action<T> action;
+        private int perNode = 4;
+        private int global = 64;
+        private int retries = 2;
+        private int pageSize = 500;
+        private Duration backoff = Duration.ofSeconds(1);
+        private Consumer<Result<T>> onResult;
+
+        Builder(PanelAPIAsync api, Action<T> action) {
+            this.api = api;
+            this.action = action;
+        }
+
+        public Builder<T> perNode(int limit) {
+            this.perNode = Math.max(1, limit);
+            return this;
+        }
+
+        public Builder<T> global(int limit) {
+            this.global = Math.max(1, limit);
+            return this;
+        }
+
+        public Builder<T> retries(int retries) {
+            this.retries = Math.max(0, retries);
+            return this;
+        }
+
+        public Builder<T> backoff(Duration backoff) {
+            this.backoff = backoff;
+            return this;
+        }
+
+        public Builder<T> pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public Builder<T> onResult(Consumer<Result<T>> handler) {
+            this.onResult = handler;
+            return this;
+        }
+
+        public BulkOperation<T> run(Collection<String> serverIds) {
+            return new BulkOperation<>(this).run(serverIds, pageSize);
+        }
+
+        public BulkOperation<T> runServers(Collection<PanelAPI.Server> servers) {
+            return new BulkOperation<>(this).runServers(servers);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package io.birdactyl.sdk;
+
+import io.birdactyl.sdk.proto.*;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class ConsoleMux implements AutoCloseable {
+    private static final ScheduledExecutorService reconnectTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "birdactyl-console-mux-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public static class Line {
+        public final String serverId, line;
+        public final long timestamp;
+
+        Line(String serverId, String line, long timestamp) {
+            this.serverId = serverId; this.line = line; this.timestamp = timestamp;
+        }
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final String serverId;
+        private final Consumer<Line> handler;
+
+        Subscription(String serverId, Consumer<Line> handler) {
+            this.serverId = serverId;
+            this.handler = handler;
+        }
+
+        @Override
+        public void close() {
+            if (serverId == null) wildcard.remove(handler);
+            else unsubscribe(serverId, handler);
+        }
+    }
+
+    private final PanelServiceGrpc.PanelServiceStub stub;
+    private final ExecutorService[] lanes;
+    private final Map<String, List<Consumer<Line>>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, ResumeCursor> cursors = new ConcurrentHashMap<>();
+    private final List<Consumer<Line>> wildcard = new CopyOnWriteArrayList<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final boolean includeHistory;
+    private final int historyLines;
+    private final int window;
+    private final long backoffMillis, maxBackoffMillis;
+    private ClientCallStreamObserver<ConsoleSubscription> call;
+    private Consumer<Throwable> errorHandler;
+    private int attempt;
+    private boolean closed;
+
+    private ConsoleMux(PanelServiceGrpc.PanelServiceStub stub, Builder b) {
+        this.stub = stub;
+        this.includeHistory = b.includeHistory;
+        this.historyLines = b.historyLines;
+        this.window = b.window;
+        this.backoffMillis = b.backoff.toMillis();
+        this.maxBackoffMillis = b.maxBackoff.toMillis();
+        this.errorHandler = b.errorHandler;
+        this.lanes = new ExecutorService[b.threads];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = "birdactyl-console-mux-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public Subscription subscribe(String serverId, Consumer<Line> handler) {
+        boolean added;
+        synchronized (this) {
+            List<Consumer<Line>> list = handlers.computeIfAbsent(serverId, k -> new CopyOnWriteArrayList<>());
+            added = list.isEmpty();
+            list.add(handler);
+            cursors.computeIfAbsent(serverId, k -> new ResumeCursor());
+            if (added) send(ConsoleSubscription.newBuilder().addSubscribe(serverId)
+                    .setIncludeHistory(includeHistory).setHistoryLines(historyLines).build());
+        }
+        return new Subscription(serverId, handler);
+    }
+
+    public Subscription subscribeAll(Consumer<Line> handler) {
+        wildcard.add(handler);
+        return new Subscription(null, handler);
+    }
+
+    public ConsoleMux onError(Consumer<Throwable> handler) {
+        this.errorHandler = handler;
+        return this;
+    }
+
+    private synchronized void unsubscribe(String serverId, Consumer<Line> handler) {
+        List<Consumer<Line>> list = handlers.get(serverId);
+        if (list == null || !list.remove(handler) || !list.isEmpty()) return;
+        handlers.remove(serverId);
+        cursors.remove(serverId);
+        send(ConsoleSubscription.newBuilder().addUnsubscribe(serverId).build());
+    }
+
+    public Set<String> subscriptions() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+
+    public long received() { return received.get(); }
+    public long reconnects() { return reconnects.get(); }
+
+    private void send(ConsoleSubscription msg) {
+        if (closed) return;
+        if (call == null) {
+            open();
+            return;
+        }
+        call.onNext(msg);
+    }
+
+    private void open() {
+        if (closed || handlers.isEmpty()) return;
+        ConsoleSubscription.Builder sub = ConsoleSubscription.newBuilder()
+                .setIncludeHistory(includeHistory).setHistoryLines(historyLines);
+        for (String id : handlers.keySet()) {
+            sub.addSubscribe(id);
+            long since = cursors.get(id).resume();
+            if (since >= 0) sub.putSince(id, since);
+        }
+        ClientCallStreamObserver<ConsoleSubscription> c = (ClientCallStreamObserver<ConsoleSubscription>) stub.streamConsoleMulti(observer());
+        call = c;
+        c.onNext(sub.build());
+    }
+
+    private ClientResponseObserver<ConsoleSubscription, TaggedConsoleLine> observer() {
+        return new ClientResponseObserver<>() {
+            private ClientCallStreamObserver<ConsoleSubscription> self;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<ConsoleSubscription> requestStream) {
+                self = requestStream;
+                requestStream.disableAutoRequestWithInitial(window);
+            }
+
+            @Override
+            public void onNext(TaggedConsoleLine msg) {
+                received.incrementAndGet();
+                String id = msg.getServerId();
+                ResumeCursor cursor = cursors.get(id);
+                if (cursor != null && !cursor.accept(msg.getTimestamp(), msg.getLine())) {
+                    self.request(1);
+                    return;
+                }
+                synchronized (ConsoleMux.this) {
+                    attempt = 0;
+                }
+                Line line = new Line(id, msg.getLine(), msg.getTimestamp());
+                lanes[(id.hashCode() & 0x7fffffff) % lanes.length].execute(() -> {
+                    try {
+                        deliver(line);
+                    } finally {
+                        self.request(1);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (Status.fromThrowable(t).getCode() == Status.Code.CANCELLED) {
+                    synchronized (ConsoleMux.this) {
+                        if (call == self) call = null;
+                    }
+                    return;
+                }
+                reconnect(self, t);
+            }
+
+            @Override
+            public void onCompleted() {
+                reconnect(self, null);
+            }
+        };
+    }
+
+    private void reconnect(ClientCallStreamObserver<ConsoleSubscription> ended, Throwable t) {
+        long delay;
+        synchronized (this) {
+            if (call != ended) return;
+            call = null;
+            if (closed) return;
+            long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+            attempt++;
+            delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        }
+        Consumer<Throwable> h = errorHandler;
+        if (h != null && t != null) h.accept(t);
+        reconnects.incrementAndGet();
+        reconnectTimer.schedule(() -> {
+            synchronized (ConsoleMux.this) {
+                if (call == null) open();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(Line line) {
+        List<Consumer<Line>> list = handlers.get(line.serverId);
+        if (list != null) {
+            for (Consumer<Line> h : list) invoke(h, line);
+        }
+        for (Consumer<Line> h : wildcard) invoke(h, line);
+    }
+
+    private static void invoke(Consumer<Line> h, Line line) {
+        try {
+            h.accept(line);
+        } catch (Exception e) {
+            System.err.println("Console handler error for " + line.serverId + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (call != null) call.cancel("console mux closed", null);
+            call = null;
+        }
+        for (ExecutorService lane : lanes) lane.shutdown();
+    }
+
+    public static class Builder {
+        private boolean includeHistory;
+        private int historyLines = 100;
+        private int threads = 4;
+        private int window = 4096;
+        private Duration backoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofSeconds(60);
+        private Consumer<Throwable> errorHandler;
+
+        public Builder includeHistory(boolean include) {
+            this.includeHistory = include;
+            return this;
+        }
+
+        public Builder historyLines(int lines) {
+            this.historyLines = lines;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = Math.max(1, threads);
+            return this;
+        }
+
+        public Builder window(int lines) {
+            this.window = Math.max(1, lines);
+            return this;
+        }
+
+        public Builder reconnectBackoff(Duration initial, Duration max) {
+            this.backoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        public Builder onError(Consumer<Throwable> handler) {
+            this.errorHandler = handler;
+            return this;
+        }
+
+        ConsoleMux build(PanelServiceGrpc.PanelServiceStub stub) {
+            return new ConsoleMux(stub, this);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package io.birdactyl.sdk;
+
+import com.google.protobuf.ByteString;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ConsoleRecord {
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, FATAL, UNKNOWN }
+
+    private byte[] buf = new byte[256];
+    private int length;
+    private long timestampMillis;
+    private int tsStart, tsEnd, threadStart, threadEnd, loggerStart, loggerEnd, msgStart;
+    private Level level = Level.UNKNOWN;
+    private String message, timestamp, thread, logger;
+
+    public ConsoleRecord parse(ByteString line, long timestampMillis) {
+        int n = line.size();
+        if (buf.length < n) buf = new byte[Math.max(n, buf.length * 2)];
+        line.copyTo(buf, 0);
+        return parse(buf, n, timestampMillis);
+    }
+
+    public ConsoleRecord parse(byte[] src, int off, int len, long timestampMillis) {
+        if (buf.length < len) buf = new byte[Math.max(len, buf.length * 2)];
+        System.arraycopy(src, off, buf, 0, len);
+        return parse(buf, len, timestampMillis);
+    }
+
+    private ConsoleRecord parse(byte[] b, int n, long timestampMillis) {
+        this.length = stripAnsi(b, n);
+        this.timestampMillis = timestampMillis;
+        this.level = Level.UNKNOWN;
+        tsStart = tsEnd = threadStart = threadEnd = loggerStart = loggerEnd = -1;
+        message = timestamp = thread = logger = null;
+
+        int p = 0;
+        boolean levelSeen = false;
+        for (int token = 0; token < 4 && p < length && b[p] == '['; token++) {
+            int close = indexOf(b, p + 1, length, (byte) ']');
+            if (close < 0) break;
+            int start = p + 1;
+            int slash = lastIndexOf(b, start, close, (byte) '/');
+            int space = lastIndexOf(b, start, close, (byte) ' ');
+            Level lv;
+            if (!levelSeen && slash >= 0 && (lv = level(b, slash + 1, close)) != Level.UNKNOWN) {
+                threadStart = start; threadEnd = slash; level = lv; levelSeen = true;
+            } else if (!levelSeen && space >= 0 && (lv = level(b, space + 1, close)) != Level.UNKNOWN) {
+                tsStart = start; tsEnd = space; level = lv; levelSeen = true;
+            } else if (!levelSeen && tsStart < 0 && token == 0) {
+                tsStart = start; tsEnd = close;
+            } else if (levelSeen && loggerStart < 0) {
+                loggerStart = start;
+                loggerEnd = slash >= 0 ? slash : close;
+            } else {
+                break;
+            }
+            p = close + 1;
+            while (p < length && b[p] == ' ') p++;
+        }
+        if (levelSeen) {
+            if (p < length && b[p] == ':') p++;
+            while (p < length && b[p] == ' ') p++;
+        } else if (tsStart >= 0 && p < length) {
+            p = skipLevelWord(b, p);
+        } else {
+            p = 0;
+        }
+        msgStart = p;
+        return this;
+    }
+
+    private int skipLevelWord(byte[] b, int p) {
+        int end = p;
+        while (end < length && b[end] >= 'A' && b[end] <= 'Z') end++;
+        Level lv = level(b, p, end);
+        if (lv == Level.UNKNOWN) return p;
+        level = lv;
+        if (end < length && b[end] == ':') end++;
+        while (end < length && b[end] == ' ') end++;
+        return end;
+    }
+
+    private static int stripAnsi(byte[] b, int n) {
+        int w = 0;
+        for (int r = 0; r < n; r++) {
+            byte c = b[r];
+            if (c == 0x1b && r + 1 < n && b[r + 1] == '[') {
+                r += 2;
+                while (r < n && (b[r] < 0x40 || b[r] > 0x7e)) r++;
+                continue;
+            }
+            if (c == (byte) 0xc2 && r + 2 < n && b[r + 1] == (byte) 0xa7) {
+                r += 2;
+                continue;
+            }
+            if (c == '\r' || (c == '\n' && r == n - 1)) continue;
+            b[w++] = c;
+        }
+        return w;
+    }
+
+    private static Level level(byte[] b, int start, int end) {
+        switch (end - start) {
+            case 4:
+                if (is(b, start, "INFO")) return Level.INFO;
+                if (is(b, start, "WARN")) return Level.WARN;
+                break;
+            case 5:
+                if (is(b, start, "ERROR")) return Level.ERROR;
+                if (is(b, start, "DEBUG")) return Level.DEBUG;
+                if (is(b, start, "TRACE")) return Level.TRACE;
+                if (is(b, start, "FATAL")) return Level.FATAL;
+                break;
+            case 6:
+                if (is(b, start, "SEVERE")) return Level.ERROR;
+                break;
+            case 7:
+                if (is(b, start, "WARNING")) return Level.WARN;
+                break;
+        }
+        return Level.UNKNOWN;
+    }
+
+    private static boolean is(byte[] b, int start, String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if ((b[start + i] & 0xdf) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] b, int from, int to, byte v) {
+        for (int i = from; i < to; i++) if (b[i] == v) return i;
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] b, int from, int to, byte v) {
+        for (int i = to - 1; i >= from; i--) if (b[i] == v) return i;
+        return -1;
+    }
+
+    private String string(int start, int end) {
+        return start < 0 ? null : new String(buf, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public Level level() { return level; }
+    public long timestampMillis() { return timestampMillis; }
+    public boolean hasTimestamp() { return tsStart >= 0; }
+    public boolean hasThread() { return threadStart >= 0; }
+    public boolean hasLogger() { return loggerStart >= 0; }
+    public int messageLength() { return length - msgStart; }
+
+    public int secondOfDay() {
+        if (tsStart < 0) return -1;
+        int end = tsEnd;
+        int dot = lastIndexOf(buf, tsStart, end, (byte) '.');
+        if (dot >= 0 && dot > lastIndexOf(buf, tsStart, end, (byte) ':')) end = dot;
+        if (end - tsStart < 8) return -1;
+        int p = end - 8;
+        if (buf[p + 2] != ':' || buf[p + 5] != ':') return -1;
+        int h = digits(p), m = digits(p + 3), s = digits(p + 6);
+        return h < 0 || m < 0 || s < 0 ? -1 : h * 3600 + m * 60 + s;
+    }
+
+    private int digits(int p) {
+        int a = buf[p] - '0', b = buf[p + 1] - '0';
+        return a < 0 || a > 9 || b < 0 || b > 9 ? -1 : a * 10 + b;
+    }
+
+    public String timestamp() {
+        if (timestamp == null) timestamp = string(tsStart, tsEnd);
+        return timestamp;
+    }
+
+    public String thread() {
+        if (thread == null) thread = string(threadStart, threadEnd);
+        return thread;
+    }
+
+    public String logger() {
+        if (logger == null) logger = string(loggerStart, loggerEnd);
+        return logger;
+    }
+
+    public String message() {
+        if (message == null) message = string(msgStart, length);
+        return message;
+    }
+
+    public String line() {
+        return string(0, length);
+    }
+
+    public ByteBuffer messageBytes() {
+        return ByteBuffer.wrap(buf, msgStart, length - msgStart).asReadOnlyBuffer();
+    }
+
+    public boolean messageStartsWith(String ascii) {
+        int n = ascii.length();
+        if (length - msgStart < n) return false;
+        for (int i = 0; i < n; i++) {
+            if (buf[msgStart + i] != ascii.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    public boolean messageContains(String ascii) {
+        int n = ascii.length();
+        outer:
+        for (int i = msgStart, last = length - n; i <= last; i++) {
+            for (int j = 0; j < n; j++) {
+                if (buf[i + j] != ascii.charAt(j)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public ConsoleRecord copy() {
+        ConsoleRecord r = new ConsoleRecord();
+        r.parse(buf, 0, length, timestampMillis);
+        return r;
+    }
+
+    @Override
+    public String toString() {
+        return line();
+    }
+}
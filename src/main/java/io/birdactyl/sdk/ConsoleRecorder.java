@@ -0,0 +1,441 @@
+package io.birdactyl.sdk;
+
+import com.google.protobuf.ByteString;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class ConsoleRecorder implements Closeable {
+    private static final int HEADER = 28;
+    private static final int INDEX_ENTRY = 24;
+
+    @FunctionalInterface
+    public interface Visitor {
+        void line(long timestamp, String line);
+    }
+
+    private final File root;
+    private final int blockSize;
+    private final long segmentSize;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final Map<String, Log> logs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    private static final class Segment {
+        final long seq;
+        final File data, index;
+        long[] first = new long[16], last = new long[16], offsets = new long[16];
+        int blocks;
+        long size;
+
+        Segment(File dir, long seq) {
+            this.seq = seq;
+            this.data = new File(dir, String.format("%016d.seg", seq));
+            this.index = new File(dir, String.format("%016d.idx", seq));
+        }
+
+        void add(long firstTs, long lastTs, long offset) {
+            if (blocks == first.length) {
+                first = Arrays.copyOf(first, blocks * 2);
+                last = Arrays.copyOf(last, blocks * 2);
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+            }
+            first[blocks] = firstTs; last[blocks] = lastTs; offsets[blocks] = offset;
+            blocks++;
+        }
+
+        long lastTimestamp() { return blocks == 0 ? Long.MIN_VALUE : last[blocks - 1]; }
+        long disk() { return size + (long) blocks * INDEX_ENTRY; }
+    }
+
+    private final class Log {
+        final File dir;
+        final List<Segment> segments = new ArrayList<>();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] raw = new byte[blockSize + 1024];
+        byte[] compressed = new byte[blockSize + 1024];
+        int rawLen, count;
+        long baseTs, minTs, maxTs;
+        Segment active;
+        FileChannel data, index;
+
+        Log(String serverId) {
+            this.dir = dir(serverId);
+            dir.mkdirs();
+            segments.addAll(loadAll(dir));
+        }
+
+        void append(long ts, ByteString line) throws IOException {
+            int need = 20 + line.size();
+            if (rawLen + need > raw.length) raw = Arrays.copyOf(raw, Math.max(raw.length * 2, rawLen + need));
+            if (count == 0) baseTs = minTs = maxTs = ts;
+            rawLen = putVarLong(raw, rawLen, ts - baseTs);
+            rawLen = putVarLong(raw, rawLen, line.size());
+            line.copyTo(raw, rawLen);
+            rawLen += line.size();
+            minTs = Math.min(minTs, ts);
+            maxTs = Math.max(maxTs, ts);
+            count++;
+            if (rawLen >= blockSize) flush();
+        }
+
+        void flush() throws IOException {
+            if (count == 0) return;
+            if (active == null || active.size >= segmentSize) roll();
+            deflater.reset();
+            deflater.setInput(raw, 0, rawLen);
+            deflater.finish();
+            int compLen = 0;
+            while (!deflater.finished()) {
+                if (compLen == compressed.length) compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                compLen += deflater.deflate(compressed, compLen, compressed.length - compLen);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(rawLen).putInt(compLen).putInt(count).putLong(baseTs).putLong(maxTs).flip();
+            long offset = active.size;
+            writeFully(data, header);
+            writeFully(data, ByteBuffer.wrap(compressed, 0, compLen));
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+            entry.putLong(minTs).putLong(maxTs).putLong(offset).flip();
+            writeFully(index, entry);
+            synchronized (segments) {
+                active.size += HEADER + compLen;
+                active.add(minTs, maxTs, offset);
+            }
+            rawLen = 0;
+            count = 0;
+        }
+
+        void roll() throws IOException {
+            closeFiles();
+            long seq;
+            synchronized (segments) {
+                seq = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).seq + 1;
+                active = new Segment(dir, seq);
+                segments.add(active);
+            }
+            data = FileChannel.open(active.data.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            index = FileChannel.open(active.index.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            enforceRetention();
+        }
+
+        void enforceRetention() {
+            long cutoff = maxAgeMillis > 0 ? System.currentTimeMillis() - maxAgeMillis : Long.MIN_VALUE;
+            synchronized (segments) {
+                long total = 0;
+                for (Segment s : segments) total += s.disk();
+                Iterator<Segment> it = segments.iterator();
+                while (it.hasNext()) {
+                    Segment s = it.next();
+                    if (s == active) break;
+                    boolean expired = s.lastTimestamp() < cutoff;
+                    boolean oversize = maxBytes > 0 && total > maxBytes;
+                    if (!expired && !oversize) break;
+                    total -= s.disk();
+                    s.data.delete();
+                    s.index.delete();
+                    it.remove();
+                }
+            }
+        }
+
+        void closeFiles() throws IOException {
+            if (data != null) { data.force(false); data.close(); }
+            if (index != null) { index.force(false); index.close(); }
+            data = index = null;
+        }
+
+        long disk() {
+            synchronized (segments) {
+                long total = 0;
+                for (Segment s : segments) total += s.disk();
+                return total;
+            }
+        }
+
+        List<Segment> snapshot() {
+            synchronized (segments) {
+                List<Segment> out = new ArrayList<>(segments.size());
+                for (Segment s : segments) {
+                    Segment copy = new Segment(dir, s.seq);
+                    copy.first = Arrays.copyOf(s.first, s.blocks);
+                    copy.last = Arrays.copyOf(s.last, s.blocks);
+                    copy.offsets = Arrays.copyOf(s.offsets, s.blocks);
+                    copy.blocks = s.blocks;
+                    copy.size = s.size;
+                    out.add(copy);
+                }
+                return out;
+            }
+        }
+    }
+
+    private ConsoleRecorder(Builder b) {
+        this.root = b.dir;
+        this.blockSize = b.blockSize;
+        this.segmentSize = b.segmentSize;
+        this.maxBytes = b.maxBytes;
+        this.maxAgeMillis = b.maxAge.toMillis();
+        root.mkdirs();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "birdactyl-console-recorder");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = b.flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public static Builder builder(File dir) {
+        return new Builder(dir);
+    }
+
+    private Log log(String serverId) {
+        return logs.computeIfAbsent(serverId, Log::new);
+    }
+
+    private File dir(String serverId) {
+        return new File(root, serverId.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    private List<Segment> loadAll(File dir) {
+        List<Segment> segments = new ArrayList<>();
+        File[] files = dir.listFiles((d, n) -> n.endsWith(".seg"));
+        if (files == null) return segments;
+        Arrays.sort(files);
+        for (File f : files) {
+            try {
+                segments.add(load(dir, Long.parseLong(f.getName().substring(0, 16))));
+            } catch (NumberFormatException | IOException e) {
+                System.err.println("Skipping console segment " + f + ": " + e.getMessage());
+            }
+        }
+        return segments;
+    }
+
+    private static Segment load(File dir, long seq) throws IOException {
+        Segment s = new Segment(dir, seq);
+        s.size = s.data.length();
+        if (!s.index.exists()) return s;
+        try (FileChannel idx = FileChannel.open(s.index.toPath(), StandardOpenOption.READ);
+             FileChannel data = FileChannel.open(s.data.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) idx.size());
+            while (buf.hasRemaining() && idx.read(buf) >= 0) { }
+            buf.flip();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (buf.remaining() >= INDEX_ENTRY) {
+                long f = buf.getLong(), l = buf.getLong(), off = buf.getLong();
+                if (off < 0 || off + HEADER > s.size) break;
+                header.clear();
+                while (header.hasRemaining() && data.read(header, off + header.position()) >= 0) { }
+                if (header.hasRemaining()) break;
+                int compLen = header.getInt(4);
+                if (compLen < 0 || off + HEADER + compLen > s.size) break;
+                s.add(f, l, off);
+            }
+        }
+        return s;
+    }
+
+    public void append(String serverId, long timestamp, String line) {
+        append(serverId, timestamp, ByteString.copyFromUtf8(line));
+    }
+
+    public void append(String serverId, long timestamp, ByteString line) {
+        if (closed) return;
+        Log log = log(serverId);
+        synchronized (log) {
+            try {
+                log.append(timestamp > 0 ? timestamp : System.currentTimeMillis(), line);
+            } catch (IOException e) {
+                System.err.println("Console recorder write failed for " + serverId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void flush() {
+        for (Map.Entry<String, Log> e : logs.entrySet()) {
+            Log log = e.getValue();
+            synchronized (log) {
+                try {
+                    log.flush();
+                    log.enforceRetention();
+                } catch (IOException ex) {
+                    System.err.println("Console recorder flush failed for " + e.getKey() + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    public void replay(String serverId, long from, long to, Visitor visitor) {
+        Log log = logs.get(serverId);
+        List<Segment> segments = log != null ? log.snapshot() : loadAll(dir(serverId));
+        Inflater inflater = new Inflater();
+        byte[] out = new byte[blockSize + 1024];
+        byte[] in = new byte[0];
+        try {
+            for (Segment s : segments) {
+                if (s.blocks == 0) continue;
+                FileChannel ch;
+                try {
+                    ch = FileChannel.open(s.data.toPath(), StandardOpenOption.READ);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                try (ch) {
+                    MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, s.size);
+                    for (int b = 0; b < s.blocks; b++) {
+                        if (s.last[b] < from || s.first[b] > to) continue;
+                        map.position((int) s.offsets[b]);
+                        int rawLen = map.getInt(), compLen = map.getInt(), count = map.getInt();
+                        long baseTs = map.getLong();
+                        map.getLong();
+                        if (in.length < compLen) in = new byte[compLen];
+                        if (out.length < rawLen) out = new byte[rawLen];
+                        map.get(in, 0, compLen);
+                        inflater.reset();
+                        inflater.setInput(in, 0, compLen);
+                        int n = 0;
+                        while (n < rawLen && !inflater.finished()) n += inflater.inflate(out, n, rawLen - n);
+                        int[] pos = {0};
+                        for (int i = 0; i < count; i++) {
+                            long ts = baseTs + getVarLong(out, pos);
+                            int len = (int) getVarLong(out, pos);
+                            if (ts >= from && ts <= to) visitor.line(ts, new String(out, pos[0], len, StandardCharsets.UTF_8));
+                            pos[0] += len;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("corrupt console block for " + serverId, e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public List<String> read(String serverId, long from, long to) {
+        List<String> out = new ArrayList<>();
+        replay(serverId, from, to, (ts, line) -> out.add(line));
+        return out;
+    }
+
+    public long diskUsage(String serverId) {
+        Log log = logs.get(serverId);
+        return log == null ? 0 : log.disk();
+    }
+
+    public long diskUsage() {
+        long total = 0;
+        for (Log log : logs.values()) total += log.disk();
+        return total;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        flusher.shutdown();
+        for (Map.Entry<String, Log> e : logs.entrySet()) {
+            Log log = e.getValue();
+            synchronized (log) {
+                try {
+                    log.flush();
+                    log.closeFiles();
+                } catch (IOException ex) {
+                    System.err.println("Console recorder close failed for " + e.getKey() + ": " + ex.getMessage());
+                }
+                log.deflater.end();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    private static int putVarLong(byte[] b, int p, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b[p++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        b[p++] = (byte) v;
+        return p;
+    }
+
+    private static long getVarLong(byte[] b, int[] pos) {
+        long v = 0;
+        int shift = 0;
+        int p = pos[0];
+        while (true) {
+            byte x = b[p++];
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0) break;
+            shift += 7;
+        }
+        pos[0] = p;
+        return v;
+    }
+
+    public static class Builder {
+        private final File dir;
+        private int blockSize = 64 * 1024;
+        private long segmentSize = 16L * 1024 * 1024;
+        private long maxBytes = 1024L * 1024 * 1024;
+        private Duration maxAge = Duration.ofDays(30);
+        private Duration flushInterval = Duration.ofSeconds(5);
+
+        Builder(File dir) {
+            this.dir = dir;
+        }
+
+        public Builder blockSize(int bytes) {
+            this.blockSize = Math.max(1024, bytes);
+            return this;
+        }
+
+        public Builder segmentSize(long bytes) {
+            this.segmentSize = Math.min(bytes, 1L << 30);
+            return this;
+        }
+
+        public Builder maxBytes(long bytes) {
+            this.maxBytes = bytes;
+            return this;
+        }
+
+        public Builder maxAge(Duration age) {
+            this.maxAge = age;
+            return this;
+        }
+
+        public Builder flushInterval(Duration interval) {
+            this.flushInterval = interval;
+            return this;
+        }
+
+        public ConsoleRecorder build() {
+            return new ConsoleRecorder(this);
+        }
+    }
+}
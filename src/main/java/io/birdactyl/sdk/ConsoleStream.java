@@ -1,66 +1,340 @@
 package io.birdactyl.sdk;
 
+import com.google.protobuf.ByteString;
 import io.birdactyl.sdk.proto.*;
-import io.grpc.stub.StreamObserver;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public class ConsoleStream {
+    public enum Overflow { BLOCK, DROP_OLDEST, SAMPLE }
+
+    private static final ExecutorService deliveryPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "birdactyl-console");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ScheduledExecutorService reconnectTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "birdactyl-console-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
     private final AtomicBoolean running = new AtomicBoolean(true);
     private final String serverId;
     private final Consumer<String> lineHandler;
+    private final Consumer<List<String>> batchHandler;
     private final Consumer<Throwable> errorHandler;
     private final Runnable completionHandler;
+    private final Overflow overflow;
+    private final int bufferSize;
+    private final int batchSize;
+    private final int sampleRate;
+    private final Executor executor;
+    private final ConsoleTriggers triggers;
+    private final Consumer<ConsoleRecord> recordHandler;
+    private final ConsoleRecorder recorder;
+    private final ConsoleRecord record = new ConsoleRecord();
+    private final StreamConsoleRequest request;
+    private final boolean reconnect;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final int maxReconnects;
+    private final ResumeCursor cursor = new ResumeCursor();
+    private final AtomicLong reconnects = new AtomicLong();
+    private PanelServiceGrpc.PanelServiceStub stub;
+    private int attempt;
+    private final ArrayDeque<ConsoleLine> queue = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile ClientCallStreamObserver<StreamConsoleRequest> call;
+    private long overflowCount;
+    private boolean terminated;
+    private Throwable failure;
+
+    private ConsoleStream(Builder b) {
+        this.serverId = b.serverId;
+        this.lineHandler = b.lineHandler;
+        this.batchHandler = b.batchHandler;
+        this.errorHandler = b.errorHandler;
+        this.completionHandler = b.completionHandler;
+        this.overflow = b.overflow;
+        this.bufferSize = b.bufferSize;
+        this.batchSize = b.batchSize;
+        this.sampleRate = b.sampleRate;
+        this.executor = b.executor != null ? b.executor : deliveryPool;
+        this.triggers = b.triggers;
+        this.recordHandler = b.recordHandler;
+        this.recorder = b.recorder;
+        this.request = b.buildRequest();
+        this.reconnect = b.reconnect;
+        this.backoffMillis = b.backoff.toMillis();
+        this.maxBackoffMillis = b.maxBackoff.toMillis();
+        this.maxReconnects = b.maxReconnects;
+    }
+
+    void open(PanelServiceGrpc.PanelServiceStub stub) {
+        this.stub = stub;
+        connect();
+    }
 
-    ConsoleStream(String serverId, Consumer<String> lineHandler, Consumer<Throwable> errorHandler, Runnable completionHandler) {
-        this.serverId = serverId;
-        this.lineHandler = lineHandler;
-        this.errorHandler = errorHandler;
-        this.completionHandler = completionHandler;
+    private void connect() {
+        if (!running.get()) return;
+        StreamConsoleRequest req = request;
+        long since = cursor.resume();
+        if (since >= 0) req = request.toBuilder().setIncludeHistory(true).setSince(since).build();
+        stub.streamConsole(req, createObserver());
+    }
+
+    public String getServerId() {
+        return serverId;
     }
 
     public void stop() {
-        running.set(false);
+        if (!running.getAndSet(false)) return;
+        synchronized (queue) {
+            queue.clear();
+        }
+        ClientCallStreamObserver<StreamConsoleRequest> c = call;
+        if (c != null) c.cancel("console stream stopped", null);
     }
 
     public boolean isRunning() {
         return running.get();
     }
 
-    StreamObserver<ConsoleLine> createObserver() {
-        return new StreamObserver<>() {
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long delivered() {
+        return delivered.get();
+    }
+
+    public long reconnects() {
+        return reconnects.get();
+    }
+
+    public int queued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    ClientResponseObserver<StreamConsoleRequest, ConsoleLine> createObserver() {
+        return new ClientResponseObserver<>() {
+            private ClientCallStreamObserver<StreamConsoleRequest> self;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<StreamConsoleRequest> requestStream) {
+                self = requestStream;
+                synchronized (queue) {
+                    call = requestStream;
+                    int initial = overflow == Overflow.BLOCK ? Math.max(0, bufferSize - queue.size()) : bufferSize;
+                    requestStream.disableAutoRequestWithInitial(initial);
+                }
+                if (!running.get()) requestStream.cancel("console stream stopped", null);
+            }
+
             @Override
             public void onNext(ConsoleLine line) {
-                if (running.get() && lineHandler != null) {
-                    lineHandler.accept(line.getLine());
+                if (!running.get()) return;
+                if (!track(line)) {
+                    self.request(1);
+                    return;
                 }
+                offer(line);
+                drain();
             }
 
             @Override
             public void onError(Throwable t) {
-                running.set(false);
-                if (errorHandler != null) {
-                    errorHandler.accept(t);
+                if (running.get() && retryable(t)) {
+                    scheduleReconnect();
+                    return;
+                }
+                synchronized (queue) {
+                    terminated = true;
+                    failure = t;
                 }
+                drain();
             }
 
             @Override
             public void onCompleted() {
-                running.set(false);
-                if (completionHandler != null) {
-                    completionHandler.run();
+                synchronized (queue) {
+                    terminated = true;
                 }
+                drain();
             }
         };
     }
 
+    private boolean track(ConsoleLine line) {
+        synchronized (queue) {
+            attempt = 0;
+        }
+        return cursor.accept(line.getTimestamp(), raw(line));
+    }
+
+    private boolean retryable(Throwable t) {
+        if (!reconnect || (maxReconnects > 0 && attempt >= maxReconnects)) return false;
+        switch (Status.fromThrowable(t).getCode()) {
+            case NOT_FOUND:
+            case PERMISSION_DENIED:
+            case UNAUTHENTICATED:
+            case INVALID_ARGUMENT:
+            case UNIMPLEMENTED:
+            case CANCELLED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void scheduleReconnect() {
+        long ceiling;
+        synchronized (queue) {
+            ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt, 20));
+            attempt++;
+        }
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        reconnects.incrementAndGet();
+        reconnectTimer.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void offer(ConsoleLine line) {
+        boolean replenish = false;
+        synchronized (queue) {
+            if (queue.size() < bufferSize || overflow == Overflow.BLOCK) {
+                queue.add(line);
+                replenish = overflow != Overflow.BLOCK;
+            } else if (overflow == Overflow.SAMPLE && ++overflowCount % sampleRate != 0) {
+                dropped.incrementAndGet();
+                replenish = true;
+            } else {
+                queue.poll();
+                queue.add(line);
+                dropped.incrementAndGet();
+                replenish = true;
+            }
+        }
+        if (replenish) call.request(1);
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        executor.execute(this::deliver);
+    }
+
+    private void deliver() {
+        int missed = 1;
+        do {
+            while (true) {
+                List<ConsoleLine> batch;
+                boolean finished;
+                Throwable error;
+                synchronized (queue) {
+                    int n = Math.min(batchSize, queue.size());
+                    batch = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) batch.add(queue.poll());
+                    finished = terminated && queue.isEmpty();
+                    error = failure;
+                }
+                if (!batch.isEmpty()) {
+                    dispatch(batch);
+                    if (overflow == Overflow.BLOCK && running.get()) call.request(batch.size());
+                }
+                if (finished) {
+                    finish(error);
+                    return;
+                }
+                if (batch.isEmpty()) break;
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void dispatch(List<ConsoleLine> batch) {
+        if (!running.get()) return;
+        try {
+            if (recorder != null) {
+                for (ConsoleLine line : batch) recorder.append(serverId, line.getTimestamp(), raw(line));
+            }
+            if (recordHandler != null) {
+                for (ConsoleLine line : batch) recordHandler.accept(record.parse(raw(line), line.getTimestamp()));
+            }
+            if (batchHandler != null || lineHandler != null || triggers != null) {
+                List<String> lines = new ArrayList<>(batch.size());
+                for (ConsoleLine line : batch) lines.add(text(line));
+                if (batchHandler != null) {
+                    batchHandler.accept(lines);
+                } else if (lineHandler != null) {
+                    for (String line : lines) lineHandler.accept(line);
+                }
+                if (triggers != null) {
+                    for (String line : lines) triggers.match(line);
+                }
+            }
+            delivered.addAndGet(batch.size());
+        } catch (Exception e) {
+            System.err.println("Console handler error for " + serverId + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteString raw(ConsoleLine line) {
+        return line.getRaw().isEmpty() ? line.getLineBytes() : line.getRaw();
+    }
+
+    private static String text(ConsoleLine line) {
+        return line.getRaw().isEmpty() ? line.getLine() : line.getRaw().toStringUtf8();
+    }
+
+    private void finish(Throwable error) {
+        boolean wasRunning = running.getAndSet(false);
+        if (error != null) {
+            if (wasRunning && errorHandler != null) errorHandler.accept(error);
+        } else if (completionHandler != null) {
+            completionHandler.run();
+        }
+    }
+
     public static class Builder {
         private final String serverId;
         private boolean includeHistory = true;
         private int historyLines = 100;
         private Consumer<String> lineHandler;
+        private Consumer<List<String>> batchHandler;
         private Consumer<Throwable> errorHandler;
         private Runnable completionHandler;
+        private Overflow overflow = Overflow.BLOCK;
+        private int bufferSize = 1024;
+        private int batchSize = 64;
+        private int sampleRate = 10;
+        private Executor executor;
+        private ConsoleTriggers triggers;
+        private Consumer<ConsoleRecord> recordHandler;
+        private ConsoleRecorder recorder;
+        private boolean reconnect = true;
+        private Duration backoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofSeconds(60);
+        private int maxReconnects;
 
         public Builder(String serverId) {
             this.serverId = serverId;
@@ -81,6 +355,21 @@ public class ConsoleStream {
             return this;
         }
 
+        public Builder onLines(Consumer<List<String>> handler) {
+            this.batchHandler = handler;
+            return this;
+        }
+
+        public Builder onRecord(Consumer<ConsoleRecord> handler) {
+            this.recordHandler = handler;
+            return this;
+        }
+
+        public Builder recordTo(ConsoleRecorder recorder) {
+            this.recorder = recorder;
+            return this;
+        }
+
         public Builder onError(Consumer<Throwable> handler) {
             this.errorHandler = handler;
             return this;
@@ -91,6 +380,52 @@ public class ConsoleStream {
             return this;
         }
 
+        public Builder overflow(Overflow policy) {
+            this.overflow = policy;
+            return this;
+        }
+
+        public Builder bufferSize(int lines) {
+            this.bufferSize = Math.max(1, lines);
+            return this;
+        }
+
+        public Builder batchSize(int lines) {
+            this.batchSize = Math.max(1, lines);
+            return this;
+        }
+
+        public Builder sampleRate(int keepOneIn) {
+            this.sampleRate = Math.max(1, keepOneIn);
+            return this;
+        }
+
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder triggers(ConsoleTriggers triggers) {
+            this.triggers = triggers;
+            return this;
+        }
+
+        public Builder reconnect(boolean reconnect) {
+            this.reconnect = reconnect;
+            return this;
+        }
+
+        public Builder reconnectBackoff(Duration initial, Duration max) {
+            this.backoff = initial;
+            this.maxBackoff = max;
+            return this;
+        }
+
+        public Builder maxReconnects(int attempts) {
+            this.maxReconnects = attempts;
+            return this;
+        }
+
         StreamConsoleRequest buildRequest() {
             return StreamConsoleRequest.newBuilder()
                     .setServerId(serverId)
@@ -100,7 +435,7 @@ public class ConsoleStream {
         }
 
         ConsoleStream build() {
-            return new ConsoleStream(serverId, lineHandler, errorHandler, completionHandler);
+            return new ConsoleStream(this);
         }
     }
 }
@@ -0,0 +1,312 @@
+package io.birdactyl.sdk;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ConsoleTriggers {
+    private final List<Rule> rules = new ArrayList<>();
+    private volatile Automaton compiled;
+
+    public static class Match {
+        public final String rule, line;
+        public final int start, end;
+        private final Matcher matcher;
+
+        Match(String rule, String line, int start, int end, Matcher matcher) {
+            this.rule = rule; this.line = line; this.start = start; this.end = end; this.matcher = matcher;
+        }
+
+        public String text() { return line.substring(start, end); }
+        public int groupCount() { return matcher == null ? 0 : matcher.groupCount(); }
+        public String group(int group) { return matcher == null ? (group == 0 ? text() : null) : matcher.group(group); }
+        public String group(String name) { return matcher == null ? null : matcher.group(name); }
+    }
+
+    private static final class Rule {
+        final String name;
+        final String literal;
+        final boolean ignoreCase;
+        final Pattern pattern;
+        final Consumer<Match> handler;
+
+        Rule(String name, String literal, boolean ignoreCase, Pattern pattern, Consumer<Match> handler) {
+            this.name = name; this.literal = literal; this.ignoreCase = ignoreCase;
+            this.pattern = pattern; this.handler = handler;
+        }
+    }
+
+    public synchronized ConsoleTriggers literal(String name, String keyword, Consumer<Match> handler) {
+        return add(new Rule(name, keyword, false, null, handler));
+    }
+
+    public synchronized ConsoleTriggers literalIgnoreCase(String name, String keyword, Consumer<Match> handler) {
+        return add(new Rule(name, keyword, true, null, handler));
+    }
+
+    public ConsoleTriggers regex(String name, String regex, Consumer<Match> handler) {
+        return regex(name, Pattern.compile(regex), handler);
+    }
+
+    public synchronized ConsoleTriggers regex(String name, Pattern pattern, Consumer<Match> handler) {
+        return add(new Rule(name, requiredLiteral(pattern), ignoresCase(pattern), pattern, handler));
+    }
+
+    public synchronized ConsoleTriggers regex(String name, Pattern pattern, String requiredLiteral, Consumer<Match> handler) {
+        return add(new Rule(name, requiredLiteral, ignoresCase(pattern), pattern, handler));
+    }
+
+    public synchronized boolean remove(String name) {
+        boolean removed = rules.removeIf(r -> r.name.equals(name));
+        if (removed) compiled = null;
+        return removed;
+    }
+
+    private ConsoleTriggers add(Rule rule) {
+        if (rule.literal != null && rule.literal.isEmpty() && rule.pattern == null) {
+            throw new IllegalArgumentException("empty trigger keyword: " + rule.name);
+        }
+        rules.add(rule);
+        compiled = null;
+        return this;
+    }
+
+    public int size() {
+        return automaton().rules.length;
+    }
+
+    public Consumer<String> asLineHandler() {
+        return this::match;
+    }
+
+    public int match(String line) {
+        Automaton a = automaton();
+        Rule[] rs = a.rules;
+        boolean[] fired = new boolean[rs.length];
+        boolean[] candidate = a.unconditional.clone();
+        int hits = 0;
+
+        int s = 0;
+        int width = a.width;
+        for (int i = 0, n = line.length(); i < n; i++) {
+            char ch = line.charAt(i);
+            int c = ch < 128 ? a.ascii[ch] : a.other.getOrDefault(Character.toLowerCase(ch), 0);
+            s = a.delta[s * width + c];
+            int[] out = a.outputs[s];
+            if (out == null) continue;
+            for (int idx : out) {
+                if (fired[idx]) continue;
+                Rule r = rs[idx];
+                int len = r.literal.length();
+                int start = i - len + 1;
+                if (!r.ignoreCase && !line.regionMatches(start, r.literal, 0, len)) continue;
+                if (r.pattern != null) {
+                    candidate[idx] = true;
+                    continue;
+                }
+                fired[idx] = true;
+                hits++;
+                fire(r, new Match(r.name, line, start, i + 1, null));
+            }
+        }
+
+        for (int idx : a.regexes) {
+            if (!candidate[idx]) continue;
+            Rule r = rs[idx];
+            Matcher m = r.pattern.matcher(line);
+            if (!m.find()) continue;
+            hits++;
+            fire(r, new Match(r.name, line, m.start(), m.end(), m));
+        }
+        return hits;
+    }
+
+    private static void fire(Rule r, Match m) {
+        try {
+            r.handler.accept(m);
+        } catch (Exception e) {
+            System.err.println("Console trigger " + r.name + " error: " + e.getMessage());
+        }
+    }
+
+    private Automaton automaton() {
+        Automaton a = compiled;
+        if (a == null) {
+            synchronized (this) {
+                a = compiled;
+                if (a == null) compiled = a = new Automaton(rules.toArray(new Rule[0]));
+            }
+        }
+        return a;
+    }
+
+    private static final Pattern INLINE_CASE = Pattern.compile("\\(\\?[a-zA-Z]*i");
+    private static final Pattern INLINE_COMMENTS = Pattern.compile("\\(\\?[a-zA-Z]*x");
+
+    private static boolean ignoresCase(Pattern pattern) {
+        return (pattern.flags() & Pattern.CASE_INSENSITIVE) != 0 || INLINE_CASE.matcher(pattern.pattern()).find();
+    }
+
+    private static final String SHORTHANDS = "dDsSwWhHvVbBAGZzRXtnrfae";
+
+    static String requiredLiteral(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.LITERAL)) != 0) return pattern.pattern();
+        String src = pattern.pattern();
+        if ((pattern.flags() & Pattern.COMMENTS) != 0 || INLINE_COMMENTS.matcher(src).find()) return null;
+        String best = null;
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= src.length()) return null;
+                char e = src.charAt(++i);
+                if (e == 'Q') {
+                    int end = src.indexOf("\\E", i + 1);
+                    String quoted = src.substring(i + 1, end < 0 ? src.length() : end);
+                    if (depth == 0) run.append(quoted);
+                    i = end < 0 ? src.length() : end + 1;
+                    continue;
+                }
+                if (Character.isLetterOrDigit(e)) {
+                    if (SHORTHANDS.indexOf(e) < 0) return null;
+                    if (depth == 0) { best = longer(best, run); run.setLength(0); }
+                    continue;
+                }
+                if (depth == 0) run.append(e);
+                continue;
+            }
+            if (c == '[') {
+                if (depth == 0) { best = longer(best, run); run.setLength(0); }
+                i++;
+                if (i < src.length() && src.charAt(i) == '^') i++;
+                if (i < src.length() && src.charAt(i) == ']') i++;
+                while (i < src.length() && src.charAt(i) != ']') {
+                    if (src.charAt(i) == '[') return null;
+                    if (src.charAt(i) == '\\') i++;
+                    i++;
+                }
+                continue;
+            }
+            if (c == '|' && depth == 0) return null;
+            if (c == '(') { depth++; best = longer(best, run); run.setLength(0); continue; }
+            if (c == ')') { depth--; best = longer(best, run); run.setLength(0); continue; }
+            if (depth > 0) continue;
+            if (c == '?' || c == '*' || c == '{') {
+                if (run.length() > 0) run.setLength(run.length() - 1);
+                best = longer(best, run); run.setLength(0);
+                if (c == '{') while (i < src.length() && src.charAt(i) != '}') i++;
+                continue;
+            }
+            if (c == '+') { best = longer(best, run); run.setLength(0); continue; }
+            if (c == '.' || c == '^' || c == '$') { best = longer(best, run); run.setLength(0); continue; }
+            run.append(c);
+        }
+        best = longer(best, run);
+        return best == null || best.isEmpty() ? null : best;
+    }
+
+    private static String longer(String best, StringBuilder run) {
+        return best == null || run.length() > best.length() ? run.toString() : best;
+    }
+
+    private static final class Automaton {
+        final Rule[] rules;
+        final int[] ascii = new int[128];
+        final Map<Character, Integer> other = new HashMap<>();
+        final int width;
+        final int[] delta;
+        final int[][] outputs;
+        final boolean[] unconditional;
+        final int[] regexes;
+
+        Automaton(Rule[] rules) {
+            this.rules = rules;
+            this.unconditional = new boolean[rules.length];
+            List<Integer> rx = new ArrayList<>();
+            Map<Character, Integer> classes = new HashMap<>();
+            int states = 1;
+            for (int i = 0; i < rules.length; i++) {
+                Rule r = rules[i];
+                if (r.pattern != null) {
+                    rx.add(i);
+                    if (r.literal == null || r.literal.isEmpty()) {
+                        unconditional[i] = true;
+                        continue;
+                    }
+                }
+                for (char ch : r.literal.toCharArray()) classes.computeIfAbsent(Character.toLowerCase(ch), k -> classes.size() + 1);
+                states += r.literal.length();
+            }
+            this.regexes = rx.stream().mapToInt(Integer::intValue).toArray();
+            this.width = classes.size() + 1;
+            for (char ch = 0; ch < 128; ch++) ascii[ch] = classes.getOrDefault(Character.toLowerCase(ch), 0);
+            for (Map.Entry<Character, Integer> e : classes.entrySet()) {
+                if (e.getKey() >= 128) other.put(e.getKey(), e.getValue());
+            }
+
+            int[] trie = new int[states * width];
+            Arrays.fill(trie, -1);
+            List<List<Integer>> own = new ArrayList<>();
+            own.add(null);
+            int count = 1;
+            for (int i = 0; i < rules.length; i++) {
+                Rule r = rules[i];
+                if (unconditional[i]) continue;
+                int s = 0;
+                for (char ch : r.literal.toCharArray()) {
+                    int c = classes.get(Character.toLowerCase(ch));
+                    int next = trie[s * width + c];
+                    if (next < 0) {
+                        next = count++;
+                        trie[s * width + c] = next;
+                        own.add(null);
+                    }
+                    s = next;
+                }
+                if (own.get(s) == null) own.set(s, new ArrayList<>());
+                own.get(s).add(i);
+            }
+
+            this.delta = new int[count * width];
+            this.outputs = new int[count][];
+            int[] fail = new int[count];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int c = 0; c < width; c++) {
+                int child = trie[c];
+                if (child > 0) {
+                    delta[c] = child;
+                    fail[child] = 0;
+                    queue.add(child);
+                } else {
+                    delta[c] = 0;
+                }
+            }
+            outputs[0] = null;
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                int[] inherited = outputs[fail[s]];
+                List<Integer> mine = own.get(s);
+                if (mine != null || inherited != null) {
+                    int n = (mine == null ? 0 : mine.size()) + (inherited == null ? 0 : inherited.length);
+                    int[] out = new int[n];
+                    int k = 0;
+                    if (mine != null) for (int idx : mine) out[k++] = idx;
+                    if (inherited != null) for (int idx : inherited) out[k++] = idx;
+                    outputs[s] = out;
+                }
+                for (int c = 0; c < width; c++) {
+                    int child = trie[s * width + c];
+                    if (child > 0) {
+                        fail[child] = delta[fail[s] * width + c];
+                        delta[s * width + c] = child;
+                        queue.add(child);
+                    } else {
+                        delta[s * width + c] = delta[fail[s] * width + c];
+                    }
+                }
+            }
+        }
+    }
+}
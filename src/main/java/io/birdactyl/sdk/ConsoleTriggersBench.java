@@ -0,0 +1,85 @@
+package io.birdactyl.sdk;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class ConsoleTriggersBench {
+    private ConsoleTriggersBench() {}
+
+    static double linesPerSecond(ConsoleTriggers triggers, List<String> sample, long millis) {
+        for (int i = 0; i < 20; i++) for (String line : sample) triggers.match(line);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long start = System.nanoTime();
+        long lines = 0;
+        while (System.nanoTime() < deadline) {
+            for (String line : sample) triggers.match(line);
+            lines += sample.size();
+        }
+        double secs = (System.nanoTime() - start) / 1e9;
+        return secs <= 0 ? 0 : lines / secs;
+    }
+
+    static ConsoleTriggers sampleTriggers(AtomicLong hits) {
+        ConsoleTriggers t = new ConsoleTriggers();
+        String[] keywords = {
+                "Exception", "OutOfMemoryError", "StackOverflowError", "Can't keep up!", "Watchdog", "crash report",
+                "Server thread dump", "Failed to bind", "Disconnecting", "lost connection", "kicked", "banned",
+                "issued server command", "moved too quickly", "moved wrongly", "Saving chunks", "Saved the game",
+                "Stopping server", "Done (", "Preparing spawn area", "UUID of player", "logged in with entity id",
+                "left the game", "joined the game", "has made the advancement", "was slain by", "fell from a high place",
+                "drowned", "Ambiguity between arguments", "Unknown command"
+        };
+        for (String k : keywords) t.literal(k, k, m -> hits.incrementAndGet());
+        t.literalIgnoreCase("grief", "grief", m -> hits.incrementAndGet());
+        t.literalIgnoreCase("hack", "hacks", m -> hits.incrementAndGet());
+        t.regex("join", "(\\w+) joined the game", m -> hits.incrementAndGet());
+        t.regex("leave", "(\\w+) left the game", m -> hits.incrementAndGet());
+        t.regex("chat", "<(\\w+)> (.*)", m -> hits.incrementAndGet());
+        t.regex("tps", "Can't keep up! Is the server overloaded\\? Running (\\d+)ms", m -> hits.incrementAndGet());
+        t.regex("login", "(\\w+)\\[/([0-9.]+):(\\d+)\\] logged in", m -> hits.incrementAndGet());
+        t.regex("command", "(\\w+) issued server command: /(\\S+)", m -> hits.incrementAndGet());
+        t.regex("death", "(\\w+) was slain by (\\w+)", m -> hits.incrementAndGet());
+        t.regex("ip", "(?i)from ([0-9]{1,3}\\.){3}[0-9]{1,3}", m -> hits.incrementAndGet());
+        return t;
+    }
+
+    static List<String> sampleLines() {
+        String[] templates = {
+                "[12:34:%02d] [Server thread/INFO]: Steve%d joined the game",
+                "[12:34:%02d] [Server thread/INFO]: <Alex%d> anyone want to trade diamonds for some iron?",
+                "[12:34:%02d] [Server thread/WARN]: Can't keep up! Is the server overloaded? Running %d00ms or 40 ticks behind",
+                "[12:34:%02d] [Server thread/INFO]: Steve%d issued server command: /home base",
+                "[12:34:%02d] [User Authenticator #1/INFO]: UUID of player Steve%d is 069a79f4-44e9-4726-a5be-fca90e38aaf5",
+                "[12:34:%02d] [Server thread/INFO]: Steve%d[/10.0.0.12:51234] logged in with entity id 123 at (1.5, 64.0, -3.5)",
+                "[12:34:%02d] [Server thread/INFO]: Steve%d lost connection: Disconnected",
+                "[12:34:%02d] [Server thread/INFO]: Steve%d left the game",
+                "[12:34:%02d] [Server thread/INFO]: Villager%d died, message: 'Villager was slain by Zombie'",
+                "[12:34:%02d] [Server thread/INFO]: Saving the game (this may take a moment!) %d",
+                "[12:34:%02d] [Worker-Main-%d/INFO]: Preparing spawn area: 83%%",
+                "[12:34:%02d] [Netty Epoll Server IO #%d/INFO]: Plugin message channel registered"
+        };
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) lines.add(String.format(templates[i % templates.length], i % 60, i));
+        return lines;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        List<String> lines = sampleLines();
+        AtomicLong hits = new AtomicLong();
+        ConsoleTriggers triggers = sampleTriggers(hits);
+        System.out.printf("rules=%d sample=%d lines%n", triggers.size(), lines.size());
+        double single = linesPerSecond(triggers, lines, millis);
+        System.out.printf("1 thread: %.0f lines/sec/core%n", single);
+        if (threads <= 1) return;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Double>> runs = new ArrayList<>();
+        for (int i = 0; i < threads; i++) runs.add(pool.submit(() -> linesPerSecond(triggers, lines, millis)));
+        double total = 0;
+        for (Future<Double> f : runs) total += f.get();
+        pool.shutdown();
+        System.out.printf("%d threads: %.0f lines/sec total, %.0f lines/sec/core%n", threads, total, total / threads);
+    }
+}
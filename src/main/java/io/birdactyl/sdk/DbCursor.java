@@ -0,0 +1,155 @@
+package io.birdactyl.sdk;
+
+import com.google.protobuf.ByteString;
+import io.birdactyl.sdk.proto.*;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class DbCursor extends DbRow implements AutoCloseable {
+    private static final Object END = new Object();
+
+    private final Observer observer;
+    private final Supplier<List<ByteString>> fallback;
+    private List<ByteString> rows = Collections.emptyList();
+    private int next;
+    private long consumed;
+    private boolean started, done;
+
+    DbCursor(PanelServiceGrpc.PanelServiceStub stub, QueryDBStreamRequest request, int window, Supplier<List<ByteString>> fallback) {
+        this.observer = new Observer(window);
+        this.fallback = fallback;
+        stub.queryDBStream(request, observer);
+    }
+
+    private static final class Observer implements ClientResponseObserver<QueryDBStreamRequest, QueryDBChunk> {
+        final BlockingQueue<Object> queue;
+        final int window;
+        ClientCallStreamObserver<QueryDBStreamRequest> call;
+
+        Observer(int window) {
+            this.window = window;
+            this.queue = new LinkedBlockingQueue<>(window + 1);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<QueryDBStreamRequest> call) {
+            this.call = call;
+            call.disableAutoRequestWithInitial(window);
+        }
+
+        @Override
+        public void onNext(QueryDBChunk chunk) {
+            enqueue(chunk);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            enqueue(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            enqueue(END);
+        }
+
+        private void enqueue(Object item) {
+            try {
+                queue.put(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                call.cancel("interrupted while buffering query results", e);
+            }
+        }
+    }
+
+    public boolean next() {
+        while (next >= rows.size()) {
+            if (done) return false;
+            Object item;
+            try {
+                item = observer.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("interrupted while reading query results", e);
+            }
+            if (item == END) {
+                done = true;
+                return false;
+            }
+            if (item instanceof Throwable) {
+                done = true;
+                Throwable t = (Throwable) item;
+                if (!started && fallback != null && Status.fromThrowable(t).getCode() == Status.Code.UNIMPLEMENTED) {
+                    rows = fallback.get();
+                    next = 0;
+                    started = true;
+                    continue;
+                }
+                if (t instanceof RuntimeException) throw (RuntimeException) t;
+                throw new StatusRuntimeException(Status.fromThrowable(t));
+            }
+            started = true;
+            rows = ((QueryDBChunk) item).getRowsList();
+            next = 0;
+            observer.call.request(1);
+        }
+        reset(rows.get(next++));
+        consumed++;
+        return true;
+    }
+
+    public long rowsRead() {
+        return consumed;
+    }
+
+    public <T> Iterator<T> iterator(Class<T> type) {
+        return new Iterator<>() {
+            private boolean ready, more;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    more = DbCursor.this.next();
+                    ready = true;
+                }
+                return more;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return as(type);
+            }
+        };
+    }
+
+    public <T> Stream<T> stream(Class<T> type) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(type), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    public <T> List<T> list(Class<T> type) {
+        List<T> out = new ArrayList<>();
+        while (next()) out.add(as(type));
+        return out;
+    }
+
+    @Override
+    public void close() {
+        if (!done) {
+            done = true;
+            observer.call.cancel("cursor closed", null);
+        }
+        rows = Collections.emptyList();
+    }
+}
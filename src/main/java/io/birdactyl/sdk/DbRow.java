@@ -0,0 +1,373 @@
+package io.birdactyl.sdk;
+
+import com.google.gson.Gson;
+import com.google.protobuf.ByteString;
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DbRow {
+    private static final Gson gson = new Gson();
+    private static final Map<Class<?>, Binder<?>> binders = new ConcurrentHashMap<>();
+    private static final int STRING = 1, NUMBER = 2, TRUE = 3, FALSE = 4, NULL = 5, OTHER = 6;
+
+    private byte[] buf = new byte[256];
+    private int length;
+    private int count;
+    private int[] keyStart = new int[16], keyEnd = new int[16], valStart = new int[16], valEnd = new int[16], types = new int[16];
+    private boolean[] escaped = new boolean[16];
+    private String[] names = new String[0];
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<Class<?>, int[]> bound = new IdentityHashMap<>();
+
+    void reset(ByteString row) {
+        int n = row.size();
+        if (buf.length < n) buf = new byte[Math.max(n, buf.length * 2)];
+        row.copyTo(buf, 0);
+        length = n;
+        parse();
+    }
+
+    void reset(byte[] row) {
+        if (buf.length < row.length) buf = new byte[Math.max(row.length, buf.length * 2)];
+        System.arraycopy(row, 0, buf, 0, row.length);
+        length = row.length;
+        parse();
+    }
+
+    private void parse() {
+        count = 0;
+        int p = skipWs(0);
+        if (p >= length || buf[p] != '{') throw new IllegalStateException("row is not a JSON object");
+        p = skipWs(p + 1);
+        while (p < length && buf[p] != '}') {
+            if (buf[p] != '"') throw new IllegalStateException("malformed row at byte " + p);
+            if (count == types.length) grow();
+            keyStart[count] = p + 1;
+            p = endOfString(p);
+            keyEnd[count] = p;
+            p = skipWs(p + 1);
+            if (p >= length || buf[p] != ':') throw new IllegalStateException("malformed row at byte " + p);
+            p = skipWs(p + 1);
+            byte c = buf[p];
+            escaped[count] = false;
+            if (c == '"') {
+                valStart[count] = p + 1;
+                int e = endOfString(p);
+                for (int i = p + 1; i < e; i++) if (buf[i] == '\\') { escaped[count] = true; break; }
+                valEnd[count] = e;
+                types[count] = STRING;
+                p = e + 1;
+            } else if (c == '{' || c == '[') {
+                valStart[count] = p;
+                p = skipNested(p);
+                valEnd[count] = p;
+                types[count] = OTHER;
+            } else {
+                valStart[count] = p;
+                while (p < length && buf[p] != ',' && buf[p] != '}' && buf[p] > ' ') p++;
+                valEnd[count] = p;
+                types[count] = c == 't' ? TRUE : c == 'f' ? FALSE : c == 'n' ? NULL : NUMBER;
+            }
+            count++;
+            p = skipWs(p);
+            if (p < length && buf[p] == ',') p = skipWs(p + 1);
+        }
+        if (!sameColumns()) {
+            names = new String[count];
+            positions.clear();
+            bound.clear();
+            for (int i = 0; i < count; i++) {
+                names[i] = new String(buf, keyStart[i], keyEnd[i] - keyStart[i], StandardCharsets.UTF_8);
+                positions.putIfAbsent(names[i], i);
+            }
+        }
+    }
+
+    private boolean sameColumns() {
+        if (names.length != count) return false;
+        for (int i = 0; i < count; i++) {
+            String n = names[i];
+            int len = keyEnd[i] - keyStart[i];
+            if (n.length() != len) return false;
+            for (int j = 0; j < len; j++) {
+                if (buf[keyStart[i] + j] != n.charAt(j)) return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        int n = types.length * 2;
+        keyStart = Arrays.copyOf(keyStart, n);
+        keyEnd = Arrays.copyOf(keyEnd, n);
+        valStart = Arrays.copyOf(valStart, n);
+        valEnd = Arrays.copyOf(valEnd, n);
+        types = Arrays.copyOf(types, n);
+        escaped = Arrays.copyOf(escaped, n);
+    }
+
+    private int skipWs(int p) {
+        while (p < length && buf[p] <= ' ') p++;
+        return p;
+    }
+
+    private int endOfString(int quote) {
+        int p = quote + 1;
+        while (p < length && buf[p] != '"') p += buf[p] == '\\' ? 2 : 1;
+        return p;
+    }
+
+    private int skipNested(int p) {
+        int depth = 0;
+        while (p < length) {
+            byte c = buf[p];
+            if (c == '"') {
+                p = endOfString(p);
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && --depth == 0) {
+                return p + 1;
+            }
+            p++;
+        }
+        return p;
+    }
+
+    public String[] columns() {
+        return names.clone();
+    }
+
+    public int columnCount() {
+        return count;
+    }
+
+    public int column(String name) {
+        Integer i = positions.get(name);
+        if (i == null) throw new IllegalArgumentException("unknown column: " + name);
+        return i;
+    }
+
+    public boolean hasColumn(String name) {
+        return positions.containsKey(name);
+    }
+
+    public boolean isNull(int i) { return types[i] == NULL; }
+    public boolean isNull(String column) { return isNull(column(column)); }
+
+    public String raw(int i) {
+        int s = types[i] == STRING ? valStart[i] - 1 : valStart[i];
+        int e = types[i] == STRING ? valEnd[i] + 1 : valEnd[i];
+        return new String(buf, s, e - s, StandardCharsets.UTF_8);
+    }
+
+    public String getString(int i) {
+        switch (types[i]) {
+            case NULL: return null;
+            case STRING:
+                if (!escaped[i]) return new String(buf, valStart[i], valEnd[i] - valStart[i], StandardCharsets.UTF_8);
+                return gson.fromJson(raw(i), String.class);
+            default: return raw(i);
+        }
+    }
+
+    public String getString(String column) { return getString(column(column)); }
+
+    public long getLong(int i) {
+        switch (types[i]) {
+            case NULL: case FALSE: return 0;
+            case TRUE: return 1;
+            case STRING: return Long.parseLong(getString(i).trim());
+            case OTHER: throw new IllegalStateException("column " + names[i] + " is not a number");
+        }
+        int p = valStart[i], end = valEnd[i];
+        boolean neg = buf[p] == '-';
+        if (neg) p++;
+        long v = 0;
+        for (; p < end; p++) {
+            int d = buf[p] - '0';
+            if (d < 0 || d > 9 || v > (Long.MAX_VALUE - 9) / 10) return parseLong(raw(i));
+            v = v * 10 + d;
+        }
+        return neg ? -v : v;
+    }
+
+    private static long parseLong(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException e) {
+            return (long) Double.parseDouble(s);
+        }
+    }
+
+    public long getLong(String column) { return getLong(column(column)); }
+    public int getInt(int i) { return (int) getLong(i); }
+    public int getInt(String column) { return getInt(column(column)); }
+
+    public double getDouble(int i) {
+        switch (types[i]) {
+            case NULL: case FALSE: return 0;
+            case TRUE: return 1;
+            case STRING: return Double.parseDouble(getString(i).trim());
+            case OTHER: throw new IllegalStateException("column " + names[i] + " is not a number");
+            default: return Double.parseDouble(new String(buf, valStart[i], valEnd[i] - valStart[i], StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    public double getDouble(String column) { return getDouble(column(column)); }
+
+    public boolean getBoolean(int i) {
+        switch (types[i]) {
+            case TRUE: return true;
+            case NUMBER: return getDouble(i) != 0;
+            case STRING:
+                String s = getString(i);
+                return s.equalsIgnoreCase("true") || s.equals("1");
+            default: return false;
+        }
+    }
+
+    public boolean getBoolean(String column) { return getBoolean(column(column)); }
+
+    public BigDecimal getBigDecimal(int i) {
+        if (types[i] == NULL) return null;
+        return new BigDecimal(types[i] == STRING ? getString(i).trim() : raw(i));
+    }
+
+    public BigDecimal getBigDecimal(String column) { return getBigDecimal(column(column)); }
+
+    public <T> T get(int i, java.lang.reflect.Type type) {
+        return types[i] == NULL ? null : gson.fromJson(raw(i), type);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) out.put(names[i], get(i, Object.class));
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T as(Class<T> type) {
+        Binder<T> b = (Binder<T>) binders.computeIfAbsent(type, Binder::new);
+        int[] cols = bound.computeIfAbsent(type, k -> b.resolve(positions));
+        return b.bind(this, cols);
+    }
+
+    private Object value(int i, Class<?> type, java.lang.reflect.Type generic) {
+        if (i < 0 || types[i] == NULL) return type.isPrimitive() ? defaultValue(type) : null;
+        if (type == String.class) return getString(i);
+        if (type == long.class || type == Long.class) return getLong(i);
+        if (type == int.class || type == Integer.class) return getInt(i);
+        if (type == double.class || type == Double.class) return getDouble(i);
+        if (type == float.class || type == Float.class) return (float) getDouble(i);
+        if (type == boolean.class || type == Boolean.class) return getBoolean(i);
+        if (type == short.class || type == Short.class) return (short) getLong(i);
+        if (type == BigDecimal.class) return getBigDecimal(i);
+        if (type.isEnum()) return enumValue(type, getString(i));
+        return get(i, generic);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class) type, name);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        return 0;
+    }
+
+    private static final class Binder<T> {
+        final String[] properties;
+        final Class<?>[] types;
+        final java.lang.reflect.Type[] generics;
+        final Constructor<T> ctor;
+        final Field[] fields;
+
+        Binder(Class<?> raw) {
+            @SuppressWarnings("unchecked")
+            Class<T> type = (Class<T>) raw;
+            try {
+                if (type.isRecord()) {
+                    RecordComponent[] rc = type.getRecordComponents();
+                    properties = new String[rc.length];
+                    types = new Class<?>[rc.length];
+                    generics = new java.lang.reflect.Type[rc.length];
+                    for (int i = 0; i < rc.length; i++) {
+                        properties[i] = rc[i].getName();
+                        types[i] = rc[i].getType();
+                        generics[i] = rc[i].getGenericType();
+                    }
+                    ctor = type.getDeclaredConstructor(types);
+                    fields = null;
+                } else {
+                    List<Field> fs = new ArrayList<>();
+                    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                        for (Field f : c.getDeclaredFields()) {
+                            int m = f.getModifiers();
+                            if (Modifier.isStatic(m) || Modifier.isTransient(m) || f.isSynthetic()) continue;
+                            f.setAccessible(true);
+                            fs.add(f);
+                        }
+                    }
+                    fields = fs.toArray(new Field[0]);
+                    properties = new String[fields.length];
+                    types = new Class<?>[fields.length];
+                    generics = new java.lang.reflect.Type[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        properties[i] = fields[i].getName();
+                        types[i] = fields[i].getType();
+                        generics[i] = fields[i].getGenericType();
+                    }
+                    ctor = type.getDeclaredConstructor();
+                }
+                ctor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(raw.getName() + " needs a canonical or no-arg constructor", e);
+            }
+        }
+
+        int[] resolve(Map<String, Integer> positions) {
+            Map<String, Integer> loose = new HashMap<>();
+            for (Map.Entry<String, Integer> e : positions.entrySet()) loose.putIfAbsent(normalize(e.getKey()), e.getValue());
+            int[] cols = new int[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                Integer c = positions.get(properties[i]);
+                if (c == null) c = loose.get(normalize(properties[i]));
+                cols[i] = c == null ? -1 : c;
+            }
+            return cols;
+        }
+
+        private static String normalize(String name) {
+            return name.replace("_", "").toLowerCase(Locale.ROOT);
+        }
+
+        T bind(DbRow row, int[] cols) {
+            try {
+                if (fields == null) {
+                    Object[] args = new Object[cols.length];
+                    for (int i = 0; i < cols.length; i++) args[i] = row.value(cols[i], types[i], generics[i]);
+                    return ctor.newInstance(args);
+                }
+                T out = ctor.newInstance();
+                for (int i = 0; i < cols.length; i++) {
+                    if (cols[i] >= 0) fields[i].set(out, row.value(cols[i], types[i], generics[i]));
+                }
+                return out;
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
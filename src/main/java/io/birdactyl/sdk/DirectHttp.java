@@ -0,0 +1,253 @@
+package io.birdactyl.sdk;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+public class DirectHttp {
+    private static final Set<String> RESTRICTED = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int maxPerHost;
+    private final Map<String, Integer> hostLimits;
+    private final Map<String, HostLimit> hosts = new ConcurrentHashMap<>();
+
+    public static class StreamResponse {
+        public final int status;
+        public final Map<String, String> headers;
+        public final InputStream body;
+
+        StreamResponse(int status, Map<String, String> headers, InputStream body) {
+            this.status = status; this.headers = headers; this.body = body;
+        }
+    }
+
+    private static final class HostLimit {
+        final int max;
+        final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        int active;
+
+        HostLimit(int max) {
+            this.max = max;
+        }
+
+        void acquire(Runnable task) {
+            synchronized (this) {
+                if (active >= max) {
+                    waiting.add(task);
+                    return;
+                }
+                active++;
+            }
+            task.run();
+        }
+
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) active--;
+            }
+            if (next != null) next.run();
+        }
+
+        synchronized int active() { return active; }
+        synchronized int queued() { return waiting.size(); }
+    }
+
+    private DirectHttp(Builder b) {
+        HttpClient.Builder cb = HttpClient.newBuilder()
+                .version(b.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(b.connectTimeout)
+                .followRedirects(b.followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER);
+        if (b.executor != null) cb.executor(b.executor);
+        this.client = cb.build();
+        this.requestTimeout = b.requestTimeout;
+        this.maxPerHost = b.maxPerHost;
+        this.hostLimits = new HashMap<>(b.hostLimits);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public CompletableFuture<PanelAPI.HTTPResponse> send(String method, String url, Map<String, String> headers, byte[] body) {
+        HttpRequest.BodyPublisher publisher = body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body);
+        HttpRequest req;
+        try {
+            req = request(method, url, headers, publisher, requestTimeout);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return exchange(req, HttpResponse.BodyHandlers.ofByteArray(), true)
+                .thenApply(r -> new PanelAPI.HTTPResponse(r.statusCode(), flatten(r.headers().map()), r.body(), ""));
+    }
+
+    public CompletableFuture<StreamResponse> stream(String method, String url, Map<String, String> headers, Supplier<InputStream> body) {
+        return stream(method, url, headers, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofInputStream(body), requestTimeout);
+    }
+
+    public CompletableFuture<StreamResponse> stream(String method, String url, Map<String, String> headers, HttpRequest.BodyPublisher body, Duration timeout) {
+        HttpRequest req;
+        try {
+            req = request(method, url, headers, body, timeout);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HostLimit limit = limit(req.uri());
+        return exchange(req, HttpResponse.BodyHandlers.ofInputStream(), false).thenApply(r -> {
+            InputStream in = new FilterInputStream(r.body()) {
+                private boolean released;
+
+                private void release() {
+                    if (released) return;
+                    released = true;
+                    limit.release();
+                }
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b < 0) release();
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buf, int off, int len) throws IOException {
+                    int n = super.read(buf, off, len);
+                    if (n < 0) release();
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+            return new StreamResponse(r.statusCode(), flatten(r.headers().map()), in);
+        });
+    }
+
+    private HttpRequest request(String method, String url, Map<String, String> headers, HttpRequest.BodyPublisher body, Duration timeout) {
+        HttpRequest.Builder rb = HttpRequest.newBuilder(URI.create(url)).method(method, body);
+        if (timeout != null && !timeout.isZero()) rb.timeout(timeout);
+        if (headers != null) {
+            for (Map.Entry<String, String> e : headers.entrySet()) {
+                if (!RESTRICTED.contains(e.getKey().toLowerCase(Locale.ROOT))) rb.header(e.getKey(), e.getValue());
+            }
+        }
+        return rb.build();
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> exchange(HttpRequest req, HttpResponse.BodyHandler<T> handler, boolean releaseOnComplete) {
+        HostLimit limit = limit(req.uri());
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        limit.acquire(() -> {
+            CompletableFuture<HttpResponse<T>> call;
+            try {
+                call = client.sendAsync(req, handler);
+            } catch (RuntimeException e) {
+                limit.release();
+                result.completeExceptionally(e);
+                return;
+            }
+            call.whenComplete((r, t) -> {
+                if (t != null || releaseOnComplete) limit.release();
+                if (t != null) result.completeExceptionally(t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+                else result.complete(r);
+            });
+        });
+        return result;
+    }
+
+    private HostLimit limit(URI uri) {
+        String host = uri.getHost() + ":" + uri.getPort();
+        return hosts.computeIfAbsent(host, k -> new HostLimit(hostLimits.getOrDefault(uri.getHost(), maxPerHost)));
+    }
+
+    private static Map<String, String> flatten(Map<String, List<String>> headers) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (!e.getKey().startsWith(":")) out.put(e.getKey(), String.join(", ", e.getValue()));
+        }
+        return out;
+    }
+
+    public int inFlight(String host) {
+        int n = 0;
+        for (Map.Entry<String, HostLimit> e : hosts.entrySet()) {
+            if (e.getKey().startsWith(host + ":")) n += e.getValue().active();
+        }
+        return n;
+    }
+
+    public int queued(String host) {
+        int n = 0;
+        for (Map.Entry<String, HostLimit> e : hosts.entrySet()) {
+            if (e.getKey().startsWith(host + ":")) n += e.getValue().queued();
+        }
+        return n;
+    }
+
+    public static class Builder {
+        private boolean http2 = true;
+        private boolean followRedirects = true;
+        private Duration connectTimeout = Duration.ofSeconds(10);
+        private Duration requestTimeout = Duration.ofSeconds(30);
+        private int maxPerHost = 16;
+        private final Map<String, Integer> hostLimits = new HashMap<>();
+        private Executor executor;
+
+        public Builder http2(boolean enabled) {
+            this.http2 = enabled;
+            return this;
+        }
+
+        public Builder followRedirects(boolean follow) {
+            this.followRedirects = follow;
+            return this;
+        }
+
+        public Builder connectTimeout(Duration timeout) {
+            this.connectTimeout = timeout;
+            return this;
+        }
+
+        public Builder requestTimeout(Duration timeout) {
+            this.requestTimeout = timeout;
+            return this;
+        }
+
+        public Builder maxConnectionsPerHost(int max) {
+            this.maxPerHost = Math.max(1, max);
+            return this;
+        }
+
+        public Builder maxConnections(String host, int max) {
+            hostLimits.put(host, Math.max(1, max));
+            return this;
+        }
+
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public DirectHttp build() {
+            return new DirectHttp(this);
+        }
+    }
+}
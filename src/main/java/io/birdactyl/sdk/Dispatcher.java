@@ -0,0 +1,171 @@
+package io.birdactyl.sdk;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Dispatcher {
+    public enum Kind { HTTP, EVENT, MIXIN, SCHEDULE }
+
+    private final String name;
+    private final Executor runner;
+    private final int maxConcurrent;
+    private final int queueLimit;
+    private final boolean direct;
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private static final class Task {
+        final Runnable body;
+        final Runnable rejected;
+
+        Task(Runnable body, Runnable rejected) {
+            this.body = body; this.rejected = rejected;
+        }
+    }
+
+    private Dispatcher(String name, Executor runner, int maxConcurrent, int queueLimit, boolean direct) {
+        this.name = name;
+        this.runner = runner;
+        this.maxConcurrent = maxConcurrent;
+        this.queueLimit = queueLimit;
+        this.direct = direct;
+    }
+
+    public static Dispatcher direct() {
+        return new Dispatcher("direct", Runnable::run, Integer.MAX_VALUE, 0, true);
+    }
+
+    public static Dispatcher virtualThreads(int maxConcurrent, int queueLimit) {
+        return new Dispatcher("virtual", virtualExecutor(), maxConcurrent, queueLimit, false);
+    }
+
+    public static Dispatcher pool(int threads, int queueLimit) {
+        return pool("handler", threads, queueLimit);
+    }
+
+    public static Dispatcher pool(String threadName, int threads, int queueLimit) {
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService exec = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, threadName + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return new Dispatcher("pool", exec, threads, queueLimit, false);
+    }
+
+    private static Executor virtualExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "handler-vt-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public boolean isDirect() { return direct; }
+    public int queued() { return queued.get(); }
+    public int peakQueued() { return peakQueued.get(); }
+    public int active() { return active.get(); }
+    public long completed() { return completed.get(); }
+    public long rejected() { return rejected.get(); }
+    public int maxConcurrent() { return maxConcurrent; }
+    public int queueLimit() { return queueLimit; }
+
+    void execute(Runnable body, Runnable onRejected) {
+        if (direct) {
+            active.incrementAndGet();
+            try {
+                body.run();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+            }
+            return;
+        }
+
+        Task task = new Task(body, onRejected);
+        if (tryAcquire()) {
+            submit(task);
+            return;
+        }
+
+        int depth = queued.incrementAndGet();
+        if (depth > queueLimit) {
+            queued.decrementAndGet();
+            reject(task);
+            return;
+        }
+        peakQueued.accumulateAndGet(depth, Math::max);
+        queue.add(task);
+        drain();
+    }
+
+    public void shutdown() {
+        if (runner instanceof ExecutorService) {
+            ((ExecutorService) runner).shutdown();
+        }
+        Task next;
+        while ((next = queue.poll()) != null) {
+            queued.decrementAndGet();
+            reject(next);
+        }
+    }
+
+    private void reject(Task task) {
+        rejected.incrementAndGet();
+        try {
+            task.rejected.run();
+        } catch (Throwable t) {
+            System.err.println("[dispatch:" + name + "] Rejection handler failed: " + t);
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int n = active.get();
+            if (n >= maxConcurrent) return false;
+            if (active.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    private void submit(Task task) {
+        try {
+            runner.execute(() -> {
+                try {
+                    task.body.run();
+                } catch (Throwable t) {
+                    System.err.println("[dispatch:" + name + "] Handler failed: " + t);
+                } finally {
+                    completed.incrementAndGet();
+                    active.decrementAndGet();
+                    drain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            active.decrementAndGet();
+            reject(task);
+        }
+    }
+
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            Task next = queue.poll();
+            if (next == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            submit(next);
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package io.birdactyl.sdk;
+
+import com.google.protobuf.ByteString;
+import io.birdactyl.sdk.proto.*;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+final class FileStreams {
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_WINDOW = 4;
+    private static final long IDLE_POLL_MS = 10;
+    private static final Object END = new Object();
+
+    private FileStreams() {}
+
+    static ReadFileStreamRequest readRequest(String serverId, String path, long offset, int chunkSize) {
+        return ReadFileStreamRequest.newBuilder()
+                .setServerId(serverId).setPath(path).setOffset(offset).setChunkSize(chunkSize).build();
+    }
+
+    static Download download(PanelServiceGrpc.PanelServiceStub stub, String serverId, String path, long offset, int chunkSize, int window) {
+        Download in = new Download(offset, window);
+        stub.readFileStream(readRequest(serverId, path, offset, chunkSize), in);
+        return in;
+    }
+
+    static Upload upload(PanelServiceGrpc.PanelServiceStub stub, String serverId, String path, long offset, int chunkSize) {
+        Upload out = new Upload(serverId, path, offset, chunkSize);
+        stub.writeFileStream(out);
+        return out;
+    }
+
+    static CompletableFuture<Long> readTo(PanelServiceGrpc.PanelServiceStub stub, String serverId, String path, long offset, int chunkSize, WritableByteChannel sink, Executor executor) {
+        ChannelSink observer = new ChannelSink(sink, executor);
+        stub.readFileStream(readRequest(serverId, path, offset, chunkSize), observer);
+        return observer.result;
+    }
+
+    static CompletableFuture<Long> writeFrom(PanelServiceGrpc.PanelServiceStub stub, String serverId, String path, long offset, int chunkSize, ReadableByteChannel source, Executor executor) {
+        ChannelSource observer = new ChannelSource(serverId, path, offset, chunkSize, source, executor);
+        stub.writeFileStream(observer);
+        return observer.result;
+    }
+
+    static final class Download extends InputStream implements ClientResponseObserver<ReadFileStreamRequest, FileChunk> {
+        private final BlockingQueue<Object> queue;
+        private final int window;
+        private ClientCallStreamObserver<ReadFileStreamRequest> call;
+        private ByteString current = ByteString.EMPTY;
+        private int pos;
+        private long position;
+        private long totalSize = -1;
+        private boolean done;
+
+        Download(long offset, int window) {
+            this.window = window;
+            this.position = offset;
+            this.queue = new LinkedBlockingQueue<>(window + 1);
+        }
+
+        public long position() { return position; }
+        public long totalSize() { return totalSize; }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReadFileStreamRequest> call) {
+            this.call = call;
+            call.disableAutoRequestWithInitial(window);
+        }
+
+        @Override
+        public void onNext(FileChunk chunk) {
+            queue.offer(chunk);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            queue.offer(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            queue.offer(END);
+        }
+
+        private boolean fill() throws IOException {
+            while (pos >= current.size()) {
+                if (done) return false;
+                Object next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                if (next == END) {
+                    done = true;
+                    return false;
+                }
+                if (next instanceof Throwable) {
+                    done = true;
+                    throw new IOException("file stream failed at offset " + position, (Throwable) next);
+                }
+                FileChunk chunk = (FileChunk) next;
+                totalSize = chunk.getTotalSize();
+                current = chunk.getData();
+                pos = 0;
+                call.request(1);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) return -1;
+            position++;
+            return current.byteAt(pos++) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, current.size() - pos);
+            current.substring(pos, pos + n).copyTo(b, off);
+            pos += n;
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current.size() - pos;
+        }
+
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                call.cancel("closed by client", null);
+            }
+            current = ByteString.EMPTY;
+            queue.clear();
+        }
+    }
+
+    static final class Upload extends OutputStream implements ClientResponseObserver<WriteFileChunk, WriteFileStreamResponse> {
+        private final String serverId;
+        private final String path;
+        private final long offset;
+        private final byte[] buf;
+        private final Object lock = new Object();
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private ClientCallStreamObserver<WriteFileChunk> call;
+        private int count;
+        private long written;
+        private boolean headerSent;
+        private boolean closed;
+
+        Upload(String serverId, String path, long offset, int chunkSize) {
+            this.serverId = serverId;
+            this.path = path;
+            this.offset = offset;
+            this.buf = new byte[chunkSize];
+        }
+
+        public long position() { return offset + written + count; }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<WriteFileChunk> call) {
+            this.call = call;
+            call.setOnReadyHandler(() -> {
+                synchronized (lock) { lock.notifyAll(); }
+            });
+        }
+
+        @Override
+        public void onNext(WriteFileStreamResponse value) {
+            result.complete(value.getBytesWritten());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.completeExceptionally(t);
+            synchronized (lock) { lock.notifyAll(); }
+        }
+
+        @Override
+        public void onCompleted() {
+            result.complete(written);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length) sendChunk();
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length) sendChunk();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) sendChunk();
+        }
+
+        private void sendChunk() throws IOException {
+            if (closed) throw new IOException("stream closed");
+            awaitReady();
+            WriteFileChunk.Builder chunk = WriteFileChunk.newBuilder().setData(ByteString.copyFrom(buf, 0, count));
+            if (!headerSent) {
+                chunk.setServerId(serverId).setPath(path).setOffset(offset);
+                headerSent = true;
+            }
+            call.onNext(chunk.build());
+            written += count;
+            count = 0;
+        }
+
+        private void awaitReady() throws IOException {
+            synchronized (lock) {
+                while (!call.isReady() && !result.isDone()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        call.cancel("interrupted", e);
+                        throw new InterruptedIOException();
+                    }
+                }
+            }
+            if (result.isCompletedExceptionally()) {
+                rethrow();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            if (count > 0 || !headerSent) sendChunk();
+            closed = true;
+            call.onCompleted();
+            rethrow();
+        }
+
+        public long await() throws IOException {
+            return rethrow();
+        }
+
+        private long rethrow() throws IOException {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException("file upload failed at offset " + (offset + written), e.getCause());
+            }
+        }
+    }
+
+    private static final class ChannelSink implements ClientResponseObserver<ReadFileStreamRequest, FileChunk> {
+        private final WritableByteChannel sink;
+        private final Executor executor;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private ClientCallStreamObserver<ReadFileStreamRequest> call;
+        private CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+        private long written;
+
+        ChannelSink(WritableByteChannel sink, Executor executor) {
+            this.sink = sink;
+            this.executor = executor;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ReadFileStreamRequest> call) {
+            this.call = call;
+            call.disableAutoRequestWithInitial(DEFAULT_WINDOW);
+            result.whenComplete((v, t) -> {
+                if (result.isCancelled()) call.cancel("cancelled", null);
+            });
+        }
+
+        @Override
+        public synchronized void onNext(FileChunk chunk) {
+            if (result.isDone()) return;
+            writes = writes.thenRunAsync(() -> write(chunk), executor);
+        }
+
+        private void write(FileChunk chunk) {
+            if (result.isDone()) return;
+            try {
+                for (ByteBuffer b : chunk.getData().asReadOnlyByteBufferList()) {
+                    while (b.hasRemaining()) written += sink.write(b);
+                }
+                call.request(1);
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                call.cancel("sink failed", e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.completeExceptionally(t);
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            writes.whenComplete((v, t) -> {
+                if (t != null) result.completeExceptionally(t);
+                else result.complete(written);
+            });
+        }
+    }
+
+    private static final class ChannelSource implements ClientResponseObserver<WriteFileChunk, WriteFileStreamResponse> {
+        private final String serverId;
+        private final String path;
+        private final long offset;
+        private final ReadableByteChannel source;
+        private final ByteBuffer buf;
+        private final Executor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private ClientCallStreamObserver<WriteFileChunk> call;
+        private boolean headerSent;
+        private boolean finished;
+
+        ChannelSource(String serverId, String path, long offset, int chunkSize, ReadableByteChannel source, Executor executor) {
+            this.serverId = serverId;
+            this.path = path;
+            this.offset = offset;
+            this.source = source;
+            this.executor = executor;
+            this.buf = ByteBuffer.allocate(chunkSize);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<WriteFileChunk> call) {
+            this.call = call;
+            call.setOnReadyHandler(() -> schedule(executor));
+            result.whenComplete((v, t) -> {
+                if (result.isCancelled()) call.cancel("cancelled", null);
+            });
+        }
+
+        private void schedule(Executor on) {
+            if (!scheduled.compareAndSet(false, true)) return;
+            try {
+                on.execute(this::pump);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+                call.cancel("executor rejected upload", e);
+            }
+        }
+
+        private synchronized void pump() {
+            scheduled.set(false);
+            try {
+                while (!finished && call.isReady() && !result.isDone()) {
+                    buf.clear();
+                    int n = source.read(buf);
+                    while (n > 0 && buf.hasRemaining()) {
+                        n = source.read(buf);
+                    }
+                    buf.flip();
+                    if (n == 0 && !buf.hasRemaining() && headerSent) {
+                        schedule(CompletableFuture.delayedExecutor(IDLE_POLL_MS, TimeUnit.MILLISECONDS, executor));
+                        break;
+                    }
+                    if (buf.hasRemaining() || !headerSent) {
+                        WriteFileChunk.Builder chunk = WriteFileChunk.newBuilder().setData(ByteString.copyFrom(buf));
+                        if (!headerSent) {
+                            chunk.setServerId(serverId).setPath(path).setOffset(offset);
+                            headerSent = true;
+                        }
+                        call.onNext(chunk.build());
+                    }
+                    if (n < 0) {
+                        finished = true;
+                        call.onCompleted();
+                    }
+                }
+            } catch (IOException e) {
+                result.completeExceptionally(e);
+                call.cancel("source failed", e);
+            }
+        }
+
+        @Override
+        public void onNext(WriteFileStreamResponse value) {
+            result.complete(value.getBytesWritten());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            result.complete(0L);
+        }
+    }
+}
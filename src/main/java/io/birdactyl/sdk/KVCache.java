@@ -0,0 +1,344 @@
+package io.birdactyl.sdk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.birdactyl.sdk.proto.KVCompareAndSetResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class KVCache implements AutoCloseable {
+    private final PanelAPI api;
+    private final Cache<String, Optional<String>> cache;
+    private final int maxPending;
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService timer;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private Map<String, Optional<String>> dirty = new HashMap<>();
+    private Map<String, Optional<String>> inFlight = Collections.emptyMap();
+    private final Set<String> atomic = new HashSet<>();
+    private long version;
+    private boolean flushQueued;
+    private volatile boolean multi = true;
+    private volatile boolean closed;
+
+    private KVCache(PanelAPI api, Builder b) {
+        this.api = api;
+        this.maxPending = b.maxPending;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(b.maximumSize)
+                .expireAfterWrite(b.ttl)
+                .build();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "birdactyl-kv-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long every = b.flushInterval.toMillis();
+        timer.scheduleWithFixedDelay(this::flushQuietly, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String get(String key) {
+        long seen;
+        synchronized (lock) {
+            Optional<String> v = pending(key);
+            if (v == null) v = cache.getIfPresent(key);
+            if (v != null) {
+                hits.incrementAndGet();
+                return v.orElse(null);
+            }
+            seen = version;
+        }
+        misses.incrementAndGet();
+        String loaded = api.getKV(key);
+        synchronized (lock) {
+            if (version != seen) {
+                Optional<String> v = pending(key);
+                if (v == null) v = cache.getIfPresent(key);
+                if (v != null) return v.orElse(null);
+            }
+            cache.put(key, Optional.ofNullable(loaded));
+        }
+        return loaded;
+    }
+
+    public Map<String, String> getAll(Collection<String> keys) {
+        Map<String, String> out = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        long seen;
+        synchronized (lock) {
+            for (String key : keys) {
+                Optional<String> v = pending(key);
+                if (v == null) v = cache.getIfPresent(key);
+                if (v == null) {
+                    missing.add(key);
+                } else if (v.isPresent()) {
+                    out.put(key, v.get());
+                }
+            }
+            seen = version;
+        }
+        hits.addAndGet(keys.size() - missing.size());
+        if (missing.isEmpty()) return out;
+        misses.addAndGet(missing.size());
+        Map<String, String> loaded = load(missing);
+        synchronized (lock) {
+            for (String key : missing) {
+                Optional<String> v = version != seen ? pending(key) : null;
+                if (v == null && version != seen) v = cache.getIfPresent(key);
+                if (v == null) {
+                    v = Optional.ofNullable(loaded.get(key));
+                    cache.put(key, v);
+                }
+                v.ifPresent(value -> out.put(key, value));
+            }
+        }
+        return out;
+    }
+
+    public void set(String key, String value) {
+        write(key, Optional.of(value));
+    }
+
+    public void delete(String key) {
+        write(key, Optional.empty());
+    }
+
+    private void write(String key, Optional<String> value) {
+        if (closed) throw new IllegalStateException("KV cache is closed");
+        boolean trigger = false;
+        synchronized (lock) {
+            awaitAtomic(key);
+            version++;
+            if (dirty.put(key, value) != null) coalesced.incrementAndGet();
+            cache.put(key, value);
+            if (dirty.size() >= maxPending && !flushQueued) {
+                flushQueued = true;
+                trigger = true;
+            }
+        }
+        if (trigger) timer.execute(this::flushQuietly);
+    }
+
+    public long increment(String key, long delta) {
+        beginAtomic(key);
+        try {
+            flushIfPending(key);
+            long value = api.incrementKV(key, delta);
+            settle(key, Optional.of(Long.toString(value)));
+            return value;
+        } finally {
+            endAtomic(key);
+        }
+    }
+
+    public boolean compareAndSet(String key, String expected, String value) {
+        beginAtomic(key);
+        try {
+            flushIfPending(key);
+            KVCompareAndSetResponse r = api.casKV(key, expected, value, Duration.ZERO);
+            if (r.getSwapped()) settle(key, Optional.of(value));
+            else settle(key, r.getFound() ? Optional.of(r.getCurrent()) : Optional.empty());
+            return r.getSwapped();
+        } finally {
+            endAtomic(key);
+        }
+    }
+
+    private void beginAtomic(String key) {
+        synchronized (lock) {
+            awaitAtomic(key);
+            atomic.add(key);
+        }
+    }
+
+    private void endAtomic(String key) {
+        synchronized (lock) {
+            atomic.remove(key);
+            lock.notifyAll();
+        }
+    }
+
+    private void awaitAtomic(String key) {
+        boolean interrupted = false;
+        while (atomic.contains(key)) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void flushIfPending(String key) {
+        boolean pending;
+        synchronized (lock) {
+            pending = pending(key) != null;
+        }
+        if (pending) flush();
+    }
+
+    private void settle(String key, Optional<String> value) {
+        synchronized (lock) {
+            version++;
+            if (pending(key) == null) cache.put(key, value);
+        }
+    }
+
+    private Optional<String> pending(String key) {
+        Optional<String> v = dirty.get(key);
+        return v != null ? v : inFlight.get(key);
+    }
+
+    public int pendingWrites() {
+        synchronized (lock) {
+            return dirty.size();
+        }
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Optional<String>> batch;
+            synchronized (lock) {
+                flushQueued = false;
+                if (dirty.isEmpty()) return;
+                batch = dirty;
+                dirty = new HashMap<>();
+                inFlight = batch;
+            }
+            try {
+                send(batch);
+                flushes.incrementAndGet();
+                written.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                errors.incrementAndGet();
+                synchronized (lock) {
+                    for (Map.Entry<String, Optional<String>> e2 : batch.entrySet()) dirty.putIfAbsent(e2.getKey(), e2.getValue());
+                }
+                throw e;
+            } finally {
+                synchronized (lock) {
+                    inFlight = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("KV flush failed: " + e.getMessage());
+        }
+    }
+
+    private void send(Map<String, Optional<String>> batch) {
+        Map<String, String> set = new HashMap<>();
+        List<String> delete = new ArrayList<>();
+        for (Map.Entry<String, Optional<String>> e : batch.entrySet()) {
+            if (e.getValue().isPresent()) set.put(e.getKey(), e.getValue().get());
+            else delete.add(e.getKey());
+        }
+        if (multi) {
+            try {
+                api.setKVs(set, delete);
+                return;
+            } catch (StatusRuntimeException e) {
+                if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) throw e;
+                multi = false;
+            }
+        }
+        for (Map.Entry<String, String> e : set.entrySet()) api.setKV(e.getKey(), e.getValue());
+        for (String key : delete) api.deleteKV(key);
+    }
+
+    private Map<String, String> load(List<String> keys) {
+        if (keys.size() > 1 && multi) {
+            try {
+                return api.getKVs(keys);
+            } catch (StatusRuntimeException e) {
+                if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) throw e;
+                multi = false;
+            }
+        }
+        Map<String, String> out = new HashMap<>();
+        for (String key : keys) {
+            String v = api.getKV(key);
+            if (v != null) out.put(key, v);
+        }
+        return out;
+    }
+
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long hits() { return hits.get(); }
+    public long misses() { return misses.get(); }
+    public long coalesced() { return coalesced.get(); }
+    public long flushes() { return flushes.get(); }
+    public long written() { return written.get(); }
+    public long errors() { return errors.get(); }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        timer.shutdown();
+        try {
+            timer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    public static class Builder {
+        private long maximumSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(5);
+        private Duration flushInterval = Duration.ofSeconds(1);
+        private int maxPending = 1000;
+
+        public Builder maximumSize(long size) {
+            this.maximumSize = size;
+            return this;
+        }
+
+        public Builder ttl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public Builder flushInterval(Duration interval) {
+            this.flushInterval = interval;
+            return this;
+        }
+
+        public Builder maxPending(int writes) {
+            this.maxPending = Math.max(1, writes);
+            return this;
+        }
+
+        public KVCache build(PanelAPI api) {
+            return new KVCache(api, this);
+        }
+    }
+}
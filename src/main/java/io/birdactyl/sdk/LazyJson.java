@@ -0,0 +1,223 @@
+package io.birdactyl.sdk;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+final class LazyJson {
+    private static final Gson gson = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private final ByteString raw;
+    private final ByteBuffer buf;
+    private int[] spans;
+    private int fields = -1;
+    private Map<String, Object> decoded;
+
+    LazyJson(ByteString raw) {
+        this.raw = raw;
+        this.buf = raw.asReadOnlyByteBuffer();
+    }
+
+    ByteString raw() { return raw; }
+    boolean isEmpty() { return raw.isEmpty(); }
+
+    Map<String, Object> toMap() {
+        if (decoded == null) {
+            Map<String, Object> m = raw.isEmpty() ? null : decode(raw, MAP_TYPE);
+            decoded = m != null ? m : new HashMap<>();
+        }
+        return decoded;
+    }
+
+    boolean has(String key) {
+        return find(key) >= 0;
+    }
+
+    Object get(String key) {
+        if (decoded != null) return decoded.get(key);
+        int i = find(key);
+        if (i < 0) return null;
+        return decode(raw.substring(valueStart(i), valueEnd(i)), Object.class);
+    }
+
+    String getString(String key, String def) {
+        int i = find(key);
+        if (i < 0) return def;
+        int start = valueStart(i), end = valueEnd(i);
+        if (byteAt(start) != '"') return def;
+        for (int p = start + 1; p < end - 1; p++) {
+            if (byteAt(p) == '\\') return decode(raw.substring(start, end), String.class);
+        }
+        return raw.substring(start + 1, end - 1).toStringUtf8();
+    }
+
+    long getLong(String key, long def) {
+        int i = find(key);
+        if (i < 0) return def;
+        int p = valueStart(i), end = valueEnd(i);
+        int c = byteAt(p);
+        if (c != '-' && (c < '0' || c > '9')) return def;
+        boolean neg = c == '-';
+        if (neg) p++;
+        long v = 0;
+        for (; p < end; p++) {
+            c = byteAt(p);
+            if (c < '0' || c > '9') return (long) getDouble(key, def);
+            v = v * 10 + (c - '0');
+        }
+        return neg ? -v : v;
+    }
+
+    double getDouble(String key, double def) {
+        int i = find(key);
+        if (i < 0) return def;
+        int start = valueStart(i);
+        int c = byteAt(start);
+        if (c != '-' && (c < '0' || c > '9')) return def;
+        try {
+            return Double.parseDouble(raw.substring(start, valueEnd(i)).toStringUtf8());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    boolean getBool(String key, boolean def) {
+        int i = find(key);
+        if (i < 0) return def;
+        int c = byteAt(valueStart(i));
+        if (c == 't') return true;
+        if (c == 'f') return false;
+        return def;
+    }
+
+    private int valueStart(int i) { return spans[i * 4 + 2]; }
+    private int valueEnd(int i) { return spans[i * 4 + 3]; }
+
+    private int byteAt(int i) {
+        return buf.get(i) & 0xff;
+    }
+
+    private int find(String key) {
+        if (fields < 0) index();
+        for (int i = 0; i < fields; i++) {
+            if (keyEquals(spans[i * 4], spans[i * 4 + 1], key)) return i;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int start, int end, String key) {
+        int len = end - start;
+        if (len == key.length()) {
+            boolean ascii = true;
+            for (int p = 0; p < len; p++) {
+                int b = byteAt(start + p);
+                if (b == '\\' || b >= 0x80) { ascii = false; break; }
+                if (b != key.charAt(p)) return false;
+            }
+            if (ascii) return true;
+        } else if (len < key.length()) {
+            return false;
+        }
+        for (int p = start; p < end; p++) {
+            int b = byteAt(p);
+            if (b == '\\' || b >= 0x80) {
+                return key.equals(decode(raw.substring(start - 1, end + 1), String.class));
+            }
+        }
+        return false;
+    }
+
+    private void index() {
+        spans = new int[32];
+        fields = 0;
+        int limit = raw.size();
+        int p = skipWs(0, limit);
+        if (p >= limit || byteAt(p) != '{') return;
+        p = skipWs(p + 1, limit);
+        while (p < limit && byteAt(p) != '}') {
+            if (byteAt(p) != '"') throw new JsonSyntaxException("expected field name at " + p);
+            int keyStart = p + 1;
+            p = skipString(p, limit);
+            int keyEnd = p - 1;
+            p = skipWs(p, limit);
+            if (p >= limit || byteAt(p) != ':') throw new JsonSyntaxException("expected ':' at " + p);
+            p = skipWs(p + 1, limit);
+            int valueStart = p;
+            p = skipValue(p, limit);
+            if (fields * 4 + 4 > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+            spans[fields * 4] = keyStart;
+            spans[fields * 4 + 1] = keyEnd;
+            spans[fields * 4 + 2] = valueStart;
+            spans[fields * 4 + 3] = p;
+            fields++;
+            p = skipWs(p, limit);
+            if (p < limit && byteAt(p) == ',') p = skipWs(p + 1, limit);
+        }
+    }
+
+    private int skipWs(int p, int limit) {
+        while (p < limit) {
+            int c = byteAt(p);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') break;
+            p++;
+        }
+        return p;
+    }
+
+    private int skipString(int p, int limit) {
+        p++;
+        while (p < limit) {
+            int c = byteAt(p++);
+            if (c == '\\') p++;
+            else if (c == '"') return p;
+        }
+        throw new JsonSyntaxException("unterminated string");
+    }
+
+    private int skipValue(int p, int limit) {
+        int c = byteAt(p);
+        if (c == '"') return skipString(p, limit);
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (p < limit) {
+                c = byteAt(p);
+                if (c == '"') {
+                    p = skipString(p, limit);
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') {
+                    if (--depth == 0) return p + 1;
+                }
+                p++;
+            }
+            throw new JsonSyntaxException("unterminated value");
+        }
+        while (p < limit) {
+            c = byteAt(p);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') break;
+            p++;
+        }
+        return p;
+    }
+
+    static <T> T decode(ByteString bytes, Type type) {
+        try (JsonReader reader = gson.newJsonReader(new InputStreamReader(bytes.newInput(), StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            return gson.<T>fromJson(reader, type);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+}
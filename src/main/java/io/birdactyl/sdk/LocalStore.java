@@ -0,0 +1,680 @@
+package io.birdactyl.sdk;
+
+import com.google.gson.Gson;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+public class LocalStore implements AutoCloseable {
+    private static final Gson gson = new Gson();
+    private static final int HEADER = 20;
+    private static final char SEP = '\u0000';
+
+    private final File dir;
+    private final long segmentSize;
+    private final boolean syncEveryWrite;
+    private final double compactRatio;
+    private final long compactMinBytes;
+    private final Map<String, Loc> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock files = new ReentrantReadWriteLock();
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+    private final ScheduledExecutorService background;
+    private final AtomicLong compactions = new AtomicLong();
+    private volatile Segment active;
+    private long seq;
+    private int nextSegment;
+    private volatile long written;
+    private volatile long durable;
+    private volatile boolean closed;
+
+    public interface Codec<T> {
+        byte[] encode(T value);
+        T decode(byte[] bytes);
+    }
+
+    public static final Codec<byte[]> BYTES = new Codec<>() {
+        public byte[] encode(byte[] value) { return value; }
+        public byte[] decode(byte[] bytes) { return bytes; }
+    };
+
+    public static final Codec<String> STRING = new Codec<>() {
+        public byte[] encode(String value) { return value.getBytes(StandardCharsets.UTF_8); }
+        public String decode(byte[] bytes) { return new String(bytes, StandardCharsets.UTF_8); }
+    };
+
+    public static final Codec<Long> LONG = new Codec<>() {
+        public byte[] encode(Long value) { return ByteBuffer.allocate(8).putLong(value).array(); }
+        public Long decode(byte[] bytes) { return ByteBuffer.wrap(bytes).getLong(); }
+    };
+
+    public static <T> Codec<T> json(Class<T> type) {
+        return new Codec<>() {
+            public byte[] encode(T value) { return gson.toJson(value).getBytes(StandardCharsets.UTF_8); }
+            public T decode(byte[] bytes) { return gson.fromJson(new String(bytes, StandardCharsets.UTF_8), type); }
+        };
+    }
+
+    public class Namespace<T> {
+        private final String prefix;
+        private final Codec<T> codec;
+
+        Namespace(String name, Codec<T> codec) {
+            this.prefix = name + SEP;
+            this.codec = codec;
+        }
+
+        public T get(String key) {
+            byte[] b = LocalStore.this.get(prefix + key);
+            return b == null ? null : codec.decode(b);
+        }
+
+        public T get(String key, T fallback) {
+            T v = get(key);
+            return v == null ? fallback : v;
+        }
+
+        public void put(String key, T value) {
+            LocalStore.this.put(prefix + key, codec.encode(value));
+        }
+
+        public boolean delete(String key) {
+            return LocalStore.this.delete(prefix + key);
+        }
+
+        public boolean contains(String key) {
+            return index.containsKey(prefix + key);
+        }
+
+        public List<String> keys() {
+            List<String> out = new ArrayList<>();
+            for (String k : index.keySet()) {
+                if (k.startsWith(prefix)) out.add(k.substring(prefix.length()));
+            }
+            return out;
+        }
+
+        public int size() {
+            int n = 0;
+            for (String k : index.keySet()) if (k.startsWith(prefix)) n++;
+            return n;
+        }
+    }
+
+    private static final class Loc {
+        final int segment;
+        final long offset;
+        final int size;
+
+        Loc(int segment, long offset, int size) {
+            this.segment = segment; this.offset = offset; this.size = size;
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final File file;
+        final FileChannel channel;
+        volatile MappedByteBuffer map;
+        long size;
+        final AtomicLong dead = new AtomicLong();
+
+        Segment(int id, File file, FileChannel channel, long size) {
+            this.id = id; this.file = file; this.channel = channel; this.size = size;
+        }
+
+        File hint() {
+            return new File(file.getParentFile(), String.format("%08d.hint", id));
+        }
+
+        void seal() throws IOException {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        void read(ByteBuffer dst, long pos) throws IOException {
+            MappedByteBuffer m = map;
+            if (m != null) {
+                ByteBuffer src = m.duplicate();
+                src.position((int) pos).limit((int) pos + dst.remaining());
+                dst.put(src);
+            } else {
+                while (dst.hasRemaining()) {
+                    int n = channel.read(dst, pos);
+                    if (n < 0) throw new EOFException("truncated record in " + file);
+                    pos += n;
+                }
+            }
+            dst.flip();
+        }
+    }
+
+    private static final class Record {
+        long seq;
+        String key;
+        boolean tombstone;
+        long offset;
+        int size;
+    }
+
+    private LocalStore(File dir, Builder b) throws IOException {
+        this.dir = dir;
+        this.segmentSize = b.segmentSize;
+        this.syncEveryWrite = b.syncEveryWrite;
+        this.compactRatio = b.compactRatio;
+        this.compactMinBytes = b.compactMinBytes;
+        dir.mkdirs();
+        recover();
+        this.background = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "birdactyl-local-store");
+            t.setDaemon(true);
+            return t;
+        });
+        long sync = b.syncInterval.toMillis();
+        if (!syncEveryWrite && sync > 0) background.scheduleWithFixedDelay(this::syncQuietly, sync, sync, TimeUnit.MILLISECONDS);
+        long compact = b.compactInterval.toMillis();
+        background.scheduleWithFixedDelay(this::compactQuietly, compact, compact, TimeUnit.MILLISECONDS);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static LocalStore open(File dir) {
+        return builder().open(dir);
+    }
+
+    public <T> Namespace<T> namespace(String name, Codec<T> codec) {
+        if (name.indexOf(SEP) >= 0) throw new IllegalArgumentException("namespace name contains NUL: " + name);
+        return new Namespace<>(name, codec);
+    }
+
+    public Namespace<String> strings(String name) {
+        return namespace(name, STRING);
+    }
+
+    private void recover() throws IOException {
+        finishCompaction();
+        File[] data = dir.listFiles((d, n) -> n.endsWith(".data"));
+        List<Integer> ids = new ArrayList<>();
+        if (data != null) for (File f : data) ids.add(Integer.parseInt(f.getName().substring(0, 8)));
+        Collections.sort(ids);
+        int activeId = -1;
+        for (int id : ids) {
+            if (!new File(dir, String.format("%08d.hint", id)).exists()) activeId = id;
+        }
+        Map<String, Long> seqs = new HashMap<>();
+        for (int id : ids) {
+            File f = new File(dir, String.format("%08d.data", id));
+            FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment seg = new Segment(id, f, ch, ch.size());
+            segments.put(id, seg);
+            boolean hinted = seg.hint().exists();
+            for (Record r : hinted ? readHint(seg) : scan(seg)) {
+                Long prev = seqs.get(r.key);
+                if (prev != null && prev > r.seq) {
+                    seg.dead.addAndGet(r.size);
+                    continue;
+                }
+                Loc old = index.get(r.key);
+                if (old != null) segments.get(old.segment).dead.addAndGet(old.size);
+                seqs.put(r.key, r.seq);
+                seq = Math.max(seq, r.seq);
+                if (r.tombstone) {
+                    index.remove(r.key);
+                    seg.dead.addAndGet(r.size);
+                } else {
+                    index.put(r.key, new Loc(id, r.offset, r.size));
+                }
+            }
+            if (id != activeId) {
+                seg.seal();
+                if (!hinted) writeHint(seg);
+            }
+            nextSegment = id + 1;
+        }
+        if (activeId < 0) {
+            roll();
+        } else {
+            active = segments.get(activeId);
+            written = durable = seq;
+            if (active.size >= segmentSize) roll();
+        }
+    }
+
+    private List<Record> scan(Segment seg) throws IOException {
+        List<Record> out = new ArrayList<>();
+        long size = seg.channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        CRC32 crc = new CRC32();
+        long pos = 0;
+        while (pos + HEADER <= size) {
+            header.clear();
+            seg.read(header, pos);
+            int expected = header.getInt();
+            long s = header.getLong();
+            int keyLen = header.getInt();
+            int valLen = header.getInt();
+            if (keyLen <= 0 || valLen < -1 || pos + HEADER + keyLen + Math.max(0, valLen) > size) break;
+            ByteBuffer body = ByteBuffer.allocate(keyLen + Math.max(0, valLen));
+            seg.read(body, pos + HEADER);
+            crc.reset();
+            crc.update(header.array(), 4, HEADER - 4);
+            crc.update(body.array());
+            if ((int) crc.getValue() != expected) break;
+            Record r = new Record();
+            r.seq = s;
+            r.key = new String(body.array(), 0, keyLen, StandardCharsets.UTF_8);
+            r.tombstone = valLen < 0;
+            r.offset = pos;
+            r.size = HEADER + keyLen + Math.max(0, valLen);
+            out.add(r);
+            pos += r.size;
+        }
+        if (pos < size) {
+            System.err.println("Local store: truncating " + seg.file.getName() + " at " + pos + " (" + (size - pos) + " trailing bytes)");
+            seg.channel.truncate(pos);
+        }
+        seg.size = pos;
+        return out;
+    }
+
+    private List<Record> readHint(Segment seg) throws IOException {
+        List<Record> out = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(seg.hint()), 1 << 16))) {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Record r = new Record();
+                r.seq = in.readLong();
+                r.offset = in.readLong();
+                r.size = in.readInt();
+                r.tombstone = in.readBoolean();
+                r.key = in.readUTF();
+                out.add(r);
+            }
+        }
+        return out;
+    }
+
+    private void writeHint(Segment seg) throws IOException {
+        List<Record> records = scan(seg);
+        File tmp = new File(dir, seg.hint().getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(records.size());
+            for (Record r : records) {
+                out.writeLong(r.seq);
+                out.writeLong(r.offset);
+                out.writeInt(r.size);
+                out.writeBoolean(r.tombstone);
+                out.writeUTF(r.key);
+            }
+        }
+        if (!tmp.renameTo(seg.hint())) throw new IOException("could not write " + seg.hint());
+    }
+
+    private void roll() throws IOException {
+        Segment prev = active;
+        int id = nextSegment++;
+        File f = new File(dir, String.format("%08d.data", id));
+        FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment seg = new Segment(id, f, ch, 0);
+        segments.put(id, seg);
+        if (prev != null) {
+            prev.channel.force(false);
+            prev.seal();
+            background(() -> writeHint(prev));
+        }
+        synchronized (syncLock) {
+            active = seg;
+            durable = written;
+        }
+    }
+
+    private interface IOTask {
+        void run() throws IOException;
+    }
+
+    private void background(IOTask task) {
+        Runnable r = () -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                System.err.println("Local store background task failed: " + e.getMessage());
+            }
+        };
+        if (background == null) r.run();
+        else background.execute(r);
+    }
+
+    public byte[] get(String key) {
+        files.readLock().lock();
+        try {
+            Loc loc = index.get(key);
+            if (loc == null) return null;
+            ByteBuffer buf = ByteBuffer.allocate(loc.size);
+            segments.get(loc.segment).read(buf, loc.offset);
+            int keyLen = buf.getInt(12);
+            byte[] value = new byte[loc.size - HEADER - keyLen];
+            buf.position(HEADER + keyLen);
+            buf.get(value);
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            files.readLock().unlock();
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        append(key, value);
+    }
+
+    public boolean delete(String key) {
+        if (!index.containsKey(key)) return false;
+        append(key, null);
+        return true;
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void append(String key, byte[] value) {
+        if (closed) throw new IllegalStateException("local store is closed");
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int valLen = value == null ? -1 : value.length;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + k.length + Math.max(0, valLen));
+        long end;
+        synchronized (writeLock) {
+            buf.putInt(0).putLong(++seq).putInt(k.length).putInt(valLen).put(k);
+            if (value != null) buf.put(value);
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), 4, buf.capacity() - 4);
+            buf.putInt(0, (int) crc.getValue());
+            buf.flip();
+            try {
+                Segment seg = active;
+                long pos = seg.size;
+                while (buf.hasRemaining()) pos += seg.channel.write(buf, pos);
+                Loc loc = new Loc(seg.id, seg.size, buf.capacity());
+                seg.size = pos;
+                written = seq;
+                Loc old = value == null ? index.remove(key) : index.put(key, loc);
+                if (old != null) segments.get(old.segment).dead.addAndGet(old.size);
+                if (value == null) seg.dead.addAndGet(loc.size);
+                end = seq;
+                if (seg.size >= segmentSize) {
+                    seg.channel.force(false);
+                    roll();
+                    return;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (syncEveryWrite) awaitDurable(end);
+    }
+
+    private void awaitDurable(long end) {
+        synchronized (syncLock) {
+            if (durable >= end) return;
+            long target = written;
+            try {
+                active.channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            durable = target;
+        }
+    }
+
+    public void sync() {
+        awaitDurable(written);
+    }
+
+    private void syncQuietly() {
+        try {
+            if (durable < written) sync();
+        } catch (Exception e) {
+            System.err.println("Local store sync failed: " + e.getMessage());
+        }
+    }
+
+    public long diskUsage() {
+        long n = 0;
+        for (Segment s : segments.values()) n += s.size;
+        return n;
+    }
+
+    public long deadBytes() {
+        long n = 0;
+        for (Segment s : segments.values()) n += s.dead.get();
+        return n;
+    }
+
+    public long compactions() {
+        return compactions.get();
+    }
+
+    private void compactQuietly() {
+        try {
+            long sealed = 0, dead = 0;
+            for (Segment s : segments.values()) {
+                if (s == active) continue;
+                sealed += s.size;
+                dead += s.dead.get();
+            }
+            if (dead >= compactMinBytes && dead >= sealed * compactRatio) compact();
+        } catch (Exception e) {
+            System.err.println("Local store compaction failed: " + e.getMessage());
+        }
+    }
+
+    public synchronized void compact() {
+        List<Segment> victims = new ArrayList<>();
+        Segment current = active;
+        for (Segment s : segments.values()) {
+            if (s != current && s.map != null) victims.add(s);
+        }
+        if (victims.isEmpty()) return;
+        victims.sort(Comparator.comparingInt(s -> s.id));
+        Set<Integer> ids = new HashSet<>();
+        for (Segment s : victims) ids.add(s.id);
+        List<Segment> outs = new ArrayList<>();
+        Map<String, Loc[]> moved = new HashMap<>();
+        try {
+            Segment out = null;
+            for (Map.Entry<String, Loc> e : index.entrySet()) {
+                Loc loc = e.getValue();
+                if (!ids.contains(loc.segment)) continue;
+                if (out == null || (out.size > 0 && out.size + loc.size > segmentSize)) out = compactionOutput(outs);
+                ByteBuffer buf = ByteBuffer.allocate(loc.size);
+                segments.get(loc.segment).read(buf, loc.offset);
+                long pos = out.size;
+                while (buf.hasRemaining()) out.size += out.channel.write(buf, out.size);
+                moved.put(e.getKey(), new Loc[]{loc, new Loc(out.id, pos, loc.size)});
+            }
+            for (Segment o : outs) {
+                o.channel.force(false);
+                o.seal();
+                writeHint(o);
+            }
+            writeManifest(outs, victims);
+        } catch (IOException e) {
+            for (Segment o : outs) {
+                o.map = null;
+                try {
+                    o.channel.close();
+                } catch (IOException ignored) {
+                }
+                o.hint().delete();
+                compactFile(o.id).delete();
+            }
+            throw new UncheckedIOException(e);
+        }
+        try {
+            for (Segment o : outs) {
+                if (!compactFile(o.id).renameTo(o.file)) throw new IOException("could not install " + o.file);
+                segments.put(o.id, o);
+            }
+            files.writeLock().lock();
+            try {
+                for (Map.Entry<String, Loc[]> e : moved.entrySet()) {
+                    Loc to = e.getValue()[1];
+                    if (!index.replace(e.getKey(), e.getValue()[0], to)) segments.get(to.segment).dead.addAndGet(to.size);
+                }
+                for (Segment s : victims) {
+                    segments.remove(s.id);
+                    s.map = null;
+                    s.channel.close();
+                    s.hint().delete();
+                    s.file.delete();
+                }
+            } finally {
+                files.writeLock().unlock();
+            }
+            manifest().delete();
+            compactions.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment compactionOutput(List<Segment> outs) throws IOException {
+        int id;
+        synchronized (writeLock) {
+            id = nextSegment++;
+        }
+        FileChannel ch = FileChannel.open(compactFile(id).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Segment seg = new Segment(id, new File(dir, String.format("%08d.data", id)), ch, 0);
+        outs.add(seg);
+        return seg;
+    }
+
+    private File compactFile(int id) {
+        return new File(dir, String.format("%08d.compact", id));
+    }
+
+    private File manifest() {
+        return new File(dir, "compact.manifest");
+    }
+
+    private void writeManifest(List<Segment> outs, List<Segment> victims) throws IOException {
+        File tmp = new File(dir, "compact.manifest.tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(outs.size());
+            for (Segment s : outs) out.writeInt(s.id);
+            out.writeInt(victims.size());
+            for (Segment s : victims) out.writeInt(s.id);
+            out.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(manifest())) throw new IOException("could not write " + manifest());
+    }
+
+    private void finishCompaction() throws IOException {
+        File manifest = manifest();
+        if (manifest.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    int id = in.readInt();
+                    File f = compactFile(id);
+                    if (f.exists() && !f.renameTo(new File(dir, String.format("%08d.data", id)))) throw new IOException("could not install " + f);
+                }
+                n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    int id = in.readInt();
+                    new File(dir, String.format("%08d.hint", id)).delete();
+                    new File(dir, String.format("%08d.data", id)).delete();
+                }
+            }
+            manifest.delete();
+        }
+        new File(dir, "compact.manifest.tmp").delete();
+        File[] partial = dir.listFiles((d, n) -> n.endsWith(".compact"));
+        if (partial == null) return;
+        for (File f : partial) {
+            System.err.println("Local store: discarding incomplete compaction output " + f.getName());
+            new File(dir, f.getName().substring(0, 8) + ".hint").delete();
+            f.delete();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                active.channel.force(false);
+                for (Segment s : segments.values()) s.channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static class Builder {
+        private long segmentSize = 64L << 20;
+        private boolean syncEveryWrite;
+        private Duration syncInterval = Duration.ofMillis(200);
+        private Duration compactInterval = Duration.ofMinutes(5);
+        private double compactRatio = 0.5;
+        private long compactMinBytes = 16L << 20;
+
+        public Builder segmentSize(long bytes) {
+            this.segmentSize = Math.min(Math.max(4096, bytes), 1L << 30);
+            return this;
+        }
+
+        public Builder syncEveryWrite(boolean sync) {
+            this.syncEveryWrite = sync;
+            return this;
+        }
+
+        public Builder syncInterval(Duration interval) {
+            this.syncInterval = interval;
+            return this;
+        }
+
+        public Builder compactInterval(Duration interval) {
+            this.compactInterval = interval;
+            return this;
+        }
+
+        public Builder compactWhen(double deadRatio, long minDeadBytes) {
+            this.compactRatio = deadRatio;
+            this.compactMinBytes = minDeadBytes;
+            return this;
+        }
+
+        public LocalStore open(File dir) {
+            try {
+                return new LocalStore(dir, this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
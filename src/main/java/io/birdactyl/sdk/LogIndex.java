@@ -0,0 +1,537 @@
+package io.birdactyl.sdk;
+
+import com.google.gson.Gson;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+public class LogIndex {
+    private static final Gson gson = new Gson();
+    private static final Pattern FILE_DATE = Pattern.compile("(\\d{4})-(\\d{2})-(\\d{2})");
+
+    private final File dir;
+    private final File contentDir;
+    private final int compactAfter;
+    private final ZoneId zone;
+    private final Map<Integer, Source> sources = new ConcurrentHashMap<>();
+    private Meta meta;
+    private volatile State state;
+
+    public static class Hit {
+        public final String serverId, file, text;
+        public final int line;
+        public final long timestamp;
+
+        Hit(String serverId, String file, int line, long timestamp, String text) {
+            this.serverId = serverId; this.file = file; this.line = line; this.timestamp = timestamp; this.text = text;
+        }
+    }
+
+    static final class FileEntry {
+        int id;
+        String server, name, modified;
+        long size;
+        int lines;
+    }
+
+    static final class Meta {
+        int nextId = 1;
+        int nextRun = 1;
+        List<String> runs = new ArrayList<>();
+        List<FileEntry> files = new ArrayList<>();
+    }
+
+    private static final class State {
+        final List<Run> runs;
+        final Map<Integer, FileEntry> files;
+
+        State(List<Run> runs, Map<Integer, FileEntry> files) {
+            this.runs = runs; this.files = files;
+        }
+    }
+
+    private static final class Run {
+        final String name;
+        final String[] terms;
+        final long[] offsets;
+        final int[] counts;
+        final MappedByteBuffer postings;
+
+        Run(String name, String[] terms, long[] offsets, int[] counts, MappedByteBuffer postings) {
+            this.name = name; this.terms = terms; this.offsets = offsets; this.counts = counts; this.postings = postings;
+        }
+    }
+
+    private static final class Source {
+        final MappedByteBuffer content;
+        final MappedByteBuffer lines;
+
+        Source(MappedByteBuffer content, MappedByteBuffer lines) {
+            this.content = content; this.lines = lines;
+        }
+
+        String line(int n) {
+            int count = lines.limit() / 4;
+            if (n < 0 || n >= count) return null;
+            int start = lines.getInt(n * 4);
+            int end = n + 1 < count ? lines.getInt((n + 1) * 4) : content.limit();
+            while (end > start && (content.get(end - 1) == '\n' || content.get(end - 1) == '\r')) end--;
+            byte[] b = new byte[end - start];
+            content.duplicate().position(start).get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Postings {
+        long[] keys = new long[4];
+        long[] ts = new long[4];
+        int n;
+
+        void add(long key, long t) {
+            if (n > 0 && keys[n - 1] == key) return;
+            if (n == keys.length) {
+                keys = Arrays.copyOf(keys, n * 2);
+                ts = Arrays.copyOf(ts, n * 2);
+            }
+            keys[n] = key; ts[n] = t; n++;
+        }
+    }
+
+    public LogIndex(File dir) {
+        this(dir, 8, ZoneId.systemDefault());
+    }
+
+    public LogIndex(File dir, int compactAfter, ZoneId zone) {
+        this.dir = dir;
+        this.contentDir = new File(dir, "files");
+        this.compactAfter = Math.max(2, compactAfter);
+        this.zone = zone;
+        contentDir.mkdirs();
+        File metaFile = new File(dir, "index.json");
+        Meta m = null;
+        if (metaFile.exists()) {
+            try (Reader r = new InputStreamReader(new FileInputStream(metaFile), StandardCharsets.UTF_8)) {
+                m = gson.fromJson(r, Meta.class);
+            } catch (Exception e) {
+                System.err.println("Failed to load log index " + metaFile + ": " + e.getMessage());
+            }
+        }
+        meta = m != null ? m : new Meta();
+        try {
+            publish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized int update(PanelAPI api, String serverId) {
+        Map<String, FileEntry> existing = new HashMap<>();
+        for (FileEntry f : meta.files) {
+            if (f.server.equals(serverId)) existing.put(f.name, f);
+        }
+        List<FileEntry> added = new ArrayList<>();
+        Set<Integer> dropped = new HashSet<>();
+        Map<String, Postings> run = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        try {
+            for (PanelAPI.LogFile lf : api.listLogFiles(serverId)) {
+                seen.add(lf.name);
+                FileEntry old = existing.get(lf.name);
+                if (old != null && old.size == lf.size && Objects.equals(old.modified, lf.modified)) continue;
+                byte[] content = decompress(api.readLogFile(serverId, lf.name));
+                FileEntry e = new FileEntry();
+                e.id = meta.nextId++;
+                e.server = serverId; e.name = lf.name; e.size = lf.size; e.modified = lf.modified;
+                e.lines = index(e, content, run);
+                added.add(e);
+                if (old != null) dropped.add(old.id);
+            }
+            for (FileEntry f : existing.values()) {
+                if (!seen.contains(f.name)) dropped.add(f.id);
+            }
+            if (added.isEmpty() && dropped.isEmpty()) return 0;
+            if (!run.isEmpty()) {
+                String name = String.format("run-%08d", meta.nextRun++);
+                writeRun(name, run);
+                meta.runs.add(name);
+            }
+            meta.files.removeIf(f -> dropped.contains(f.id));
+            meta.files.addAll(added);
+            saveMeta();
+            for (int id : dropped) {
+                sources.remove(id);
+                new File(contentDir, id + ".log").delete();
+                new File(contentDir, id + ".lines").delete();
+            }
+            publish();
+            if (state.runs.size() > compactAfter) compact();
+            return added.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int updateAll(PanelAPI api, Collection<String> serverIds) {
+        int n = 0;
+        for (String id : serverIds) {
+            try {
+                n += update(api, id);
+            } catch (RuntimeException e) {
+                System.err.println("Log index update failed for " + id + ": " + e.getMessage());
+            }
+        }
+        return n;
+    }
+
+    private static byte[] decompress(byte[] content) throws IOException {
+        if (content.length < 2 || (content[0] & 0xff) != 0x1f || (content[1] & 0xff) != 0x8b) return content;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private int index(FileEntry e, byte[] content, Map<String, Postings> run) throws IOException {
+        Files.write(new File(contentDir, e.id + ".log").toPath(), content);
+        ByteBuffer offsets = ByteBuffer.allocate(4 * 1024);
+        ConsoleRecord record = new ConsoleRecord();
+        long day = dayStart(e);
+        long ts = day;
+        int prevSecond = -1;
+        int line = 0;
+        int start = 0;
+        Set<String> terms = new HashSet<>();
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') end++;
+            if (offsets.remaining() < 4) offsets = ByteBuffer.allocate(offsets.capacity() * 2).put(offsets.flip());
+            offsets.putInt(start);
+            int second = record.parse(content, start, Math.min(end - start, 64), 0).secondOfDay();
+            if (second >= 0) {
+                if (prevSecond >= 0 && second < prevSecond - 43_200) day += 86_400_000L;
+                prevSecond = second;
+                ts = day + second * 1000L;
+            }
+            terms.clear();
+            tokenize(content, start, end, terms);
+            long key = ((long) e.id << 32) | line;
+            for (String t : terms) run.computeIfAbsent(t, k -> new Postings()).add(key, ts);
+            line++;
+            start = end + 1;
+        }
+        offsets.flip();
+        try (FileChannel ch = FileChannel.open(new File(contentDir, e.id + ".lines").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (offsets.hasRemaining()) ch.write(offsets);
+        }
+        return line;
+    }
+
+    private long dayStart(FileEntry e) {
+        Matcher m = FILE_DATE.matcher(e.name);
+        if (m.find()) {
+            try {
+                return LocalDate.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)))
+                        .atStartOfDay(zone).toInstant().toEpochMilli();
+            } catch (DateTimeException ignored) {}
+        }
+        Instant modified = null;
+        if (e.modified != null && !e.modified.isEmpty()) {
+            try {
+                modified = OffsetDateTime.parse(e.modified).toInstant();
+            } catch (Exception ignored) {
+                try { modified = Instant.ofEpochSecond(Long.parseLong(e.modified)); } catch (Exception ignored2) {}
+            }
+        }
+        if (modified == null) modified = Instant.now();
+        return modified.atZone(zone).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private static void tokenize(byte[] b, int start, int end, Collection<String> out) {
+        int p = start;
+        while (p < end) {
+            while (p < end && !isTokenByte(b[p])) p++;
+            int s = p;
+            while (p < end && isTokenByte(b[p])) p++;
+            int len = p - s;
+            if (len >= 2 && len <= 64) {
+                byte[] t = new byte[len];
+                for (int i = 0; i < len; i++) {
+                    byte c = b[s + i];
+                    t[i] = c >= 'A' && c <= 'Z' ? (byte) (c + 32) : c;
+                }
+                out.add(new String(t, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static boolean isTokenByte(byte c) {
+        return c < 0 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private void writeRun(String name, Map<String, Postings> run) throws IOException {
+        String[] terms = run.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        File post = new File(dir, name + ".post");
+        File dict = new File(dir, name + ".terms");
+        try (DataOutputStream p = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(post), 1 << 16));
+             DataOutputStream d = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dict), 1 << 16))) {
+            d.writeInt(terms.length);
+            for (String t : terms) {
+                Postings ps = run.get(t);
+                d.writeUTF(t);
+                d.writeLong(p.size());
+                d.writeInt(ps.n);
+                writePostings(p, ps);
+            }
+        }
+    }
+
+    private static void writePostings(DataOutputStream out, Postings ps) throws IOException {
+        long prevKey = 0, prevTs = 0;
+        for (int i = 0; i < ps.n; i++) {
+            writeVarLong(out, ps.keys[i] - prevKey);
+            long dt = ps.ts[i] - prevTs;
+            writeVarLong(out, (dt << 1) ^ (dt >> 63));
+            prevKey = ps.keys[i];
+            prevTs = ps.ts[i];
+        }
+    }
+
+    private static Postings readPostings(Run run, int termIdx) {
+        Postings ps = new Postings();
+        int count = run.counts[termIdx];
+        ps.keys = new long[count];
+        ps.ts = new long[count];
+        ByteBuffer buf = run.postings.duplicate();
+        buf.position((int) run.offsets[termIdx]);
+        long key = 0, ts = 0;
+        for (int i = 0; i < count; i++) {
+            key += readVarLong(buf);
+            long z = readVarLong(buf);
+            ts += (z >>> 1) ^ -(z & 1);
+            ps.keys[i] = key;
+            ps.ts[i] = ts;
+        }
+        ps.n = count;
+        return ps;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+            shift += 7;
+        }
+    }
+
+    private Run openRun(String name) throws IOException {
+        File dict = new File(dir, name + ".terms");
+        String[] terms;
+        long[] offsets;
+        int[] counts;
+        try (DataInputStream d = new DataInputStream(new BufferedInputStream(new FileInputStream(dict), 1 << 16))) {
+            int n = d.readInt();
+            terms = new String[n];
+            offsets = new long[n];
+            counts = new int[n];
+            for (int i = 0; i < n; i++) {
+                terms[i] = d.readUTF();
+                offsets[i] = d.readLong();
+                counts[i] = d.readInt();
+            }
+        }
+        try (FileChannel ch = FileChannel.open(new File(dir, name + ".post").toPath(), StandardOpenOption.READ)) {
+            return new Run(name, terms, offsets, counts, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    private void publish() throws IOException {
+        Map<String, Run> current = new HashMap<>();
+        if (state != null) for (Run r : state.runs) current.put(r.name, r);
+        List<Run> runs = new ArrayList<>();
+        for (String name : meta.runs) {
+            Run r = current.get(name);
+            runs.add(r != null ? r : openRun(name));
+        }
+        Map<Integer, FileEntry> files = new HashMap<>();
+        for (FileEntry f : meta.files) files.put(f.id, f);
+        state = new State(Collections.unmodifiableList(runs), Collections.unmodifiableMap(files));
+    }
+
+    private void saveMeta() throws IOException {
+        File tmp = new File(dir, "index.json.tmp");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            gson.toJson(meta, w);
+        }
+        Files.move(tmp.toPath(), new File(dir, "index.json").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void compact() {
+        State s = state;
+        if (s.runs.size() < 2) return;
+        TreeSet<String> terms = new TreeSet<>();
+        for (Run r : s.runs) terms.addAll(Arrays.asList(r.terms));
+        Map<String, Postings> merged = new LinkedHashMap<>();
+        try {
+            String name = String.format("run-%08d", meta.nextRun++);
+            File post = new File(dir, name + ".post");
+            File dict = new File(dir, name + ".terms");
+            int written = 0;
+            ByteArrayOutputStream dictBody = new ByteArrayOutputStream();
+            try (DataOutputStream p = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(post), 1 << 16));
+                 DataOutputStream d = new DataOutputStream(dictBody)) {
+                for (String t : terms) {
+                    Postings all = new Postings();
+                    for (Run r : s.runs) {
+                        int idx = Arrays.binarySearch(r.terms, t);
+                        if (idx < 0) continue;
+                        Postings ps = readPostings(r, idx);
+                        for (int i = 0; i < ps.n; i++) {
+                            if (s.files.containsKey((int) (ps.keys[i] >>> 32))) all.add(ps.keys[i], ps.ts[i]);
+                        }
+                    }
+                    if (all.n == 0) continue;
+                    d.writeUTF(t);
+                    d.writeLong(p.size());
+                    d.writeInt(all.n);
+                    writePostings(p, all);
+                    written++;
+                }
+            }
+            try (DataOutputStream d = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dict)))) {
+                d.writeInt(written);
+                dictBody.writeTo(d);
+            }
+            List<String> old = new ArrayList<>(meta.runs);
+            meta.runs.clear();
+            meta.runs.add(name);
+            saveMeta();
+            publish();
+            for (String r : old) {
+                new File(dir, r + ".post").delete();
+                new File(dir, r + ".terms").delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public List<Hit> search(String query, int limit) {
+        return search(null, query, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    public List<Hit> search(String serverId, String query, long from, long to, int limit) {
+        State s = state;
+        List<String> phrases = new ArrayList<>();
+        Set<String> terms = new LinkedHashSet<>();
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            byte[] b = parts[i].getBytes(StandardCharsets.UTF_8);
+            tokenize(b, 0, b.length, terms);
+            if (i % 2 == 1 && !parts[i].isBlank()) phrases.add(parts[i].toLowerCase(Locale.ROOT));
+        }
+        List<Hit> hits = new ArrayList<>();
+        if (terms.isEmpty()) return hits;
+
+        List<Postings> lists = new ArrayList<>();
+        for (String t : terms) {
+            Postings ps = lookup(s, t);
+            if (ps.n == 0) return hits;
+            lists.add(ps);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.n));
+        Postings result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.n > 0; i++) result = intersect(result, lists.get(i));
+
+        for (int i = 0; i < result.n && hits.size() < limit; i++) {
+            long ts = result.ts[i];
+            if (ts < from || ts > to) continue;
+            int fileId = (int) (result.keys[i] >>> 32);
+            int line = (int) result.keys[i];
+            FileEntry f = s.files.get(fileId);
+            if (f == null || (serverId != null && !serverId.equals(f.server))) continue;
+            String text = text(fileId, line);
+            if (text == null) continue;
+            if (!phrases.isEmpty()) {
+                String lower = text.toLowerCase(Locale.ROOT);
+                boolean all = true;
+                for (String ph : phrases) {
+                    if (!lower.contains(ph)) { all = false; break; }
+                }
+                if (!all) continue;
+            }
+            hits.add(new Hit(f.server, f.name, line + 1, ts, text));
+        }
+        return hits;
+    }
+
+    private static Postings lookup(State s, String term) {
+        Postings out = new Postings();
+        for (Run r : s.runs) {
+            int idx = Arrays.binarySearch(r.terms, term);
+            if (idx < 0) continue;
+            Postings ps = readPostings(r, idx);
+            for (int i = 0; i < ps.n; i++) out.add(ps.keys[i], ps.ts[i]);
+        }
+        return out;
+    }
+
+    private static Postings intersect(Postings a, Postings b) {
+        Postings out = new Postings();
+        int i = 0, j = 0;
+        while (i < a.n && j < b.n) {
+            long x = a.keys[i], y = b.keys[j];
+            if (x == y) {
+                out.add(x, a.ts[i]);
+                i++; j++;
+            } else if (x < y) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private String text(int fileId, int line) {
+        Source src = sources.computeIfAbsent(fileId, id -> {
+            try (FileChannel c = FileChannel.open(new File(contentDir, id + ".log").toPath(), StandardOpenOption.READ);
+                 FileChannel l = FileChannel.open(new File(contentDir, id + ".lines").toPath(), StandardOpenOption.READ)) {
+                return new Source(c.map(FileChannel.MapMode.READ_ONLY, 0, c.size()), l.map(FileChannel.MapMode.READ_ONLY, 0, l.size()));
+            } catch (IOException e) {
+                return null;
+            }
+        });
+        return src == null ? null : src.line(line);
+    }
+
+    public int fileCount() {
+        return state.files.size();
+    }
+
+    public int runCount() {
+        return state.runs.size();
+    }
+}
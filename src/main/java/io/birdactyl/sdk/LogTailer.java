@@ -0,0 +1,253 @@
+package io.birdactyl.sdk;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class LogTailer {
+    private final PanelAPI api;
+    private final String serverId;
+    private final int chunkSize;
+    private final long initialTail;
+    private final int maxLineBytes;
+    private final Duration interval;
+    private final Consumer<Line> handler;
+    private final Map<String, FileState> files = new ConcurrentHashMap<>();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+    private ScheduledExecutorService timer;
+
+    public static class Line {
+        public final String serverId, file, line;
+        public final long offset;
+
+        Line(String serverId, String file, String line, long offset) {
+            this.serverId = serverId; this.file = file; this.line = line; this.offset = offset;
+        }
+    }
+
+    private static final class FileState {
+        long offset = -1;
+        String fileId = "";
+        byte[] carry = new byte[256];
+        int carryLen;
+        long carryOffset;
+    }
+
+    private LogTailer(Builder b) {
+        this.api = b.api;
+        this.serverId = b.serverId;
+        this.chunkSize = b.chunkSize;
+        this.initialTail = b.initialTail;
+        this.maxLineBytes = b.maxLineBytes;
+        this.interval = b.interval;
+        this.handler = b.handler;
+    }
+
+    public static Builder builder(PanelAPI api, String serverId) {
+        return new Builder(api, serverId);
+    }
+
+    public LogTailer follow(String filename) {
+        files.computeIfAbsent(filename, k -> new FileState());
+        return this;
+    }
+
+    public LogTailer unfollow(String filename) {
+        files.remove(filename);
+        return this;
+    }
+
+    public LogTailer seek(String filename, long offset) {
+        FileState st = files.computeIfAbsent(filename, k -> new FileState());
+        synchronized (st) {
+            st.offset = offset;
+            st.carryLen = 0;
+        }
+        return this;
+    }
+
+    public long offset(String filename) {
+        FileState st = files.get(filename);
+        if (st == null) return -1;
+        synchronized (st) {
+            return st.offset < 0 ? -1 : st.offset - st.carryLen;
+        }
+    }
+
+    public Map<String, Long> offsets() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String f : files.keySet()) out.put(f, offset(f));
+        return out;
+    }
+
+    public long bytesRead() { return bytesRead.get(); }
+    public long rotations() { return rotations.get(); }
+
+    public List<Line> poll() {
+        List<Line> out = new ArrayList<>();
+        for (String f : files.keySet()) out.addAll(poll(f));
+        return out;
+    }
+
+    public List<Line> poll(String filename) {
+        FileState st = files.computeIfAbsent(filename, k -> new FileState());
+        List<Line> out = new ArrayList<>();
+        synchronized (st) {
+            if (st.offset < 0) {
+                if (initialTail < 0) {
+                    st.offset = 0;
+                } else {
+                    long want = Math.max(1, initialTail);
+                    PanelAPI.LogChunk chunk = api.tailLogFile(serverId, filename, want);
+                    bytesRead.addAndGet(chunk.content.length);
+                    st.fileId = chunk.fileId;
+                    int skip = (int) Math.max(0, chunk.content.length - want);
+                    if (chunk.offset + skip > 0) {
+                        while (skip < chunk.content.length && chunk.content[skip] != '\n') skip++;
+                        skip = Math.min(skip + 1, chunk.content.length);
+                    }
+                    consume(filename, st, chunk.content, skip, chunk.offset + skip, out);
+                    st.offset = chunk.end();
+                    if (st.offset >= chunk.fileSize) return out;
+                }
+            }
+            while (true) {
+                PanelAPI.LogChunk chunk = api.readLogFile(serverId, filename, st.offset, chunkSize);
+                bytesRead.addAndGet(chunk.content.length);
+                boolean replaced = !st.fileId.isEmpty() && !chunk.fileId.isEmpty() && !st.fileId.equals(chunk.fileId);
+                if (replaced || chunk.fileSize < st.offset) {
+                    rotations.incrementAndGet();
+                    if (st.carryLen > 0) emit(filename, st, out);
+                    st.offset = 0;
+                    st.fileId = chunk.fileId;
+                    continue;
+                }
+                st.fileId = chunk.fileId;
+                long skip = Math.max(0, st.offset - chunk.offset);
+                if (skip >= chunk.content.length) break;
+                consume(filename, st, chunk.content, (int) skip, st.offset, out);
+                st.offset = chunk.end();
+                if (chunk.content.length - skip < chunkSize || st.offset >= chunk.fileSize) break;
+            }
+        }
+        return out;
+    }
+
+    private void consume(String filename, FileState st, byte[] b, int from, long fileOffset, List<Line> out) {
+        int start = from;
+        for (int i = from; i < b.length; i++) {
+            if (b[i] != '\n') continue;
+            append(st, b, start, i - start, fileOffset + (start - from));
+            emit(filename, st, out);
+            start = i + 1;
+        }
+        if (start < b.length) {
+            append(st, b, start, b.length - start, fileOffset + (start - from));
+            if (st.carryLen >= maxLineBytes) emit(filename, st, out);
+        }
+    }
+
+    private static void append(FileState st, byte[] b, int off, int len, long fileOffset) {
+        if (st.carryLen == 0) st.carryOffset = fileOffset;
+        if (st.carry.length < st.carryLen + len) st.carry = Arrays.copyOf(st.carry, Math.max(st.carryLen + len, st.carry.length * 2));
+        System.arraycopy(b, off, st.carry, st.carryLen, len);
+        st.carryLen += len;
+    }
+
+    private void emit(String filename, FileState st, List<Line> out) {
+        int len = st.carryLen;
+        if (len > 0 && st.carry[len - 1] == '\r') len--;
+        out.add(new Line(serverId, filename, new String(st.carry, 0, len, StandardCharsets.UTF_8), st.carryOffset));
+        st.carryLen = 0;
+    }
+
+    public synchronized LogTailer start() {
+        if (timer != null) return this;
+        if (handler == null) throw new IllegalStateException("no line handler set");
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "birdactyl-log-tailer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::tick, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private void tick() {
+        for (String f : files.keySet()) {
+            try {
+                for (Line line : poll(f)) handler.accept(line);
+            } catch (Exception e) {
+                System.err.println("Log tail of " + serverId + "/" + f + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public static class Builder {
+        private final PanelAPI api;
+        private final String serverId;
+        private int chunkSize = 1 << 20;
+        private long initialTail = 0;
+        private int maxLineBytes = 1 << 20;
+        private Duration interval = Duration.ofSeconds(2);
+        private Consumer<Line> handler;
+        private final List<String> files = new ArrayList<>();
+
+        Builder(PanelAPI api, String serverId) {
+            this.api = api;
+            this.serverId = serverId;
+        }
+
+        public Builder file(String filename) {
+            files.add(filename);
+            return this;
+        }
+
+        public Builder chunkSize(int bytes) {
+            this.chunkSize = Math.max(1024, bytes);
+            return this;
+        }
+
+        public Builder fromStart() {
+            this.initialTail = -1;
+            return this;
+        }
+
+        public Builder fromEnd(long tailBytes) {
+            this.initialTail = Math.max(0, tailBytes);
+            return this;
+        }
+
+        public Builder maxLineBytes(int bytes) {
+            this.maxLineBytes = Math.max(1, bytes);
+            return this;
+        }
+
+        public Builder interval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder onLine(Consumer<Line> handler) {
+            this.handler = handler;
+            return this;
+        }
+
+        public LogTailer build() {
+            LogTailer t = new LogTailer(this);
+            for (String f : files) t.follow(f);
+            return t;
+        }
+    }
+}
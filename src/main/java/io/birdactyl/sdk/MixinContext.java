@@ -1,5 +1,6 @@
 package io.birdactyl.sdk;
 
+import com.google.protobuf.ByteString;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -8,46 +9,111 @@ import java.util.Map;
 public class MixinContext {
     private final String target;
     private final String requestId;
-    private final Map<String, Object> input;
-    private final Map<String, Object> chainData;
-    private Map<String, Object> modifiedInput;
+    private final LazyJson inputJson;
+    private final LazyJson chainJson;
+    private Map<String, Object> input;
+    private Map<String, Object> chainData;
+    private MixinPatch patch;
     private List<MixinResult.Notification> notifications;
 
     public MixinContext(String target, String requestId, Map<String, Object> input, Map<String, Object> chainData) {
         this.target = target;
         this.requestId = requestId;
+        this.inputJson = null;
+        this.chainJson = null;
         this.input = input != null ? input : new HashMap<>();
         this.chainData = chainData != null ? chainData : new HashMap<>();
     }
 
+    MixinContext(String target, String requestId, ByteString input, ByteString chainData) {
+        this.target = target;
+        this.requestId = requestId;
+        this.inputJson = new LazyJson(input);
+        this.chainJson = new LazyJson(chainData);
+    }
+
     public String getTarget() { return target; }
     public String getRequestId() { return requestId; }
-    public Map<String, Object> getInput() { return input; }
-    public Map<String, Object> getChainData() { return chainData; }
 
-    public Object get(String key) { return input.get(key); }
+    public Map<String, Object> getInput() {
+        if (input == null) input = inputJson.toMap();
+        return input;
+    }
+
+    public Map<String, Object> getChainData() {
+        if (chainData == null) chainData = chainJson.toMap();
+        return chainData;
+    }
+
+    public Object get(String key) {
+        if (input == null) return inputJson.get(key);
+        return input.get(key);
+    }
+
+    public boolean has(String key) {
+        if (input == null) return inputJson.has(key);
+        return input.containsKey(key);
+    }
 
     public String getString(String key) {
+        if (input == null) return inputJson.getString(key, "");
         Object v = input.get(key);
         return v instanceof String ? (String) v : "";
     }
 
     public int getInt(String key) {
+        return (int) getLong(key);
+    }
+
+    public long getLong(String key) {
+        if (input == null) return inputJson.getLong(key, 0);
         Object v = input.get(key);
-        if (v instanceof Number) return ((Number) v).intValue();
+        if (v instanceof Number) return ((Number) v).longValue();
+        return 0;
+    }
+
+    public double getDouble(String key) {
+        if (input == null) return inputJson.getDouble(key, 0);
+        Object v = input.get(key);
+        if (v instanceof Number) return ((Number) v).doubleValue();
         return 0;
     }
 
     public boolean getBool(String key) {
+        if (input == null) return inputJson.getBool(key, false);
         Object v = input.get(key);
         return v instanceof Boolean && (Boolean) v;
     }
 
     public void set(String key, Object value) {
-        if (modifiedInput == null) {
-            modifiedInput = new HashMap<>(input);
+        setPath(MixinPatch.pointer(key), value);
+    }
+
+    public void remove(String key) {
+        removePath(MixinPatch.pointer(key));
+    }
+
+    public void setPath(String pointer, Object value) {
+        int slash = pointer.lastIndexOf('/');
+        if (slash > 0 && !exists(pointer.substring(0, slash))) {
+            throw new IllegalArgumentException("parent of " + pointer + " does not exist");
         }
-        modifiedInput.put(key, value);
+        if (patch == null) patch = new MixinPatch();
+        patch.add(pointer, value);
+    }
+
+    public void removePath(String pointer) {
+        if (!exists(pointer)) return;
+        if (patch == null) patch = new MixinPatch();
+        patch.remove(pointer);
+    }
+
+    private boolean exists(String pointer) {
+        Boolean known = patch != null ? patch.present(pointer) : null;
+        if (known != null) return known;
+        List<String> keys = MixinPatch.split(pointer);
+        if (keys.size() == 1 && input == null) return inputJson.has(keys.get(0));
+        return MixinPatch.lookup(getInput(), keys) != MixinPatch.MISSING;
     }
 
     public void notify(String title, String message, String type) {
@@ -70,7 +136,7 @@ public class MixinContext {
     }
 
     public MixinResult next() {
-        return new MixinResult(MixinResult.Action.NEXT, null, null, modifiedInput, notifications);
+        return new MixinResult(MixinResult.Action.NEXT, null, null, patch, this::getInput, notifications);
     }
 
     public MixinResult returnValue(Object data) {
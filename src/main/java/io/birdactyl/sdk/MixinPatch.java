@@ -0,0 +1,180 @@
+package io.birdactyl.sdk;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class MixinPatch {
+    private static final Gson gson = new Gson();
+    private final List<Op> ops = new ArrayList<>();
+
+    public static class Op {
+        private final String op;
+        private final String path;
+        private final Object value;
+
+        Op(String op, String path, Object value) {
+            this.op = op; this.path = path; this.value = value;
+        }
+
+        public String getOp() { return op; }
+        public String getPath() { return path; }
+        public Object getValue() { return value; }
+    }
+
+    public static String pointer(String... keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String k : keys) {
+            sb.append('/').append(k.replace("~", "~0").replace("/", "~1"));
+        }
+        return sb.toString();
+    }
+
+    void add(String path, Object value) {
+        record(new Op("add", path, value));
+    }
+
+    void remove(String path) {
+        record(new Op("remove", path, null));
+    }
+
+    private void record(Op op) {
+        String prefix = op.path + "/";
+        boolean add = op.op.equals("add");
+        ops.removeIf(o -> o.path.startsWith(prefix) || (add && o.path.equals(op.path)));
+        ops.add(op);
+    }
+
+    public boolean isEmpty() { return ops.isEmpty(); }
+    public List<Op> getOps() { return Collections.unmodifiableList(ops); }
+
+    public ByteString toJson() {
+        ByteString.Output out = ByteString.newOutput();
+        try (JsonWriter w = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            w.setSerializeNulls(true);
+            w.beginArray();
+            for (Op op : ops) {
+                w.beginObject();
+                w.name("op").value(op.op);
+                w.name("path").value(op.path);
+                if (!op.op.equals("remove")) {
+                    w.name("value");
+                    if (op.value == null) w.nullValue();
+                    else gson.toJson(op.value, op.value.getClass(), w);
+                }
+                w.endObject();
+            }
+            w.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteString();
+    }
+
+    Boolean present(String path) {
+        for (int i = ops.size() - 1; i >= 0; i--) {
+            Op o = ops.get(i);
+            if (o.path.equals(path)) return o.op.equals("add");
+            if (path.startsWith(o.path + "/")) {
+                if (o.op.equals("remove")) return false;
+                return lookup(o.value, split(path.substring(o.path.length()))) != MISSING;
+            }
+        }
+        return null;
+    }
+
+    static final Object MISSING = new Object();
+
+    static Object lookup(Object node, List<String> keys) {
+        for (String key : keys) {
+            if (node instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) node;
+                if (!map.containsKey(key)) return MISSING;
+                node = map.get(key);
+            } else if (node instanceof List) {
+                List<?> list = (List<?>) node;
+                int i = index(key, list.size() - 1);
+                if (i < 0) return MISSING;
+                node = list.get(i);
+            } else {
+                return MISSING;
+            }
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> applyTo(Map<String, Object> input) {
+        Object root = new HashMap<>(input);
+        for (Op op : ops) {
+            List<String> keys = split(op.path);
+            if (keys.isEmpty()) {
+                if (op.op.equals("remove") || !(op.value instanceof Map)) throw new IllegalArgumentException("invalid patch op on document root: " + op.op);
+                root = new HashMap<>((Map<String, Object>) op.value);
+                continue;
+            }
+            Object parent = root;
+            for (int i = 0; i < keys.size() - 1; i++) {
+                String key = keys.get(i);
+                Object child = lookup(parent, Collections.singletonList(key));
+                Object copy;
+                if (child instanceof Map) copy = new HashMap<>((Map<String, Object>) child);
+                else if (child instanceof List) copy = new ArrayList<>((List<Object>) child);
+                else throw new IllegalArgumentException("patch path not found: " + op.path);
+                if (parent instanceof Map) ((Map<String, Object>) parent).put(key, copy);
+                else ((List<Object>) parent).set(index(key, ((List<Object>) parent).size() - 1), copy);
+                parent = copy;
+            }
+            String last = keys.get(keys.size() - 1);
+            if (parent instanceof Map) {
+                Map<String, Object> map = (Map<String, Object>) parent;
+                if (op.op.equals("remove")) {
+                    if (!map.containsKey(last)) throw new IllegalArgumentException("patch path not found: " + op.path);
+                    map.remove(last);
+                } else {
+                    map.put(last, op.value);
+                }
+            } else if (parent instanceof List) {
+                List<Object> list = (List<Object>) parent;
+                if (op.op.equals("remove")) {
+                    int i = index(last, list.size() - 1);
+                    if (i < 0) throw new IllegalArgumentException("patch path not found: " + op.path);
+                    list.remove(i);
+                } else {
+                    int i = last.equals("-") ? list.size() : index(last, list.size());
+                    if (i < 0) throw new IllegalArgumentException("patch index out of range: " + op.path);
+                    list.add(i, op.value);
+                }
+            } else {
+                throw new IllegalArgumentException("patch path not found: " + op.path);
+            }
+        }
+        return (Map<String, Object>) root;
+    }
+
+    private static int index(String key, int max) {
+        if (key.isEmpty() || key.length() > 9 || (key.length() > 1 && key.charAt(0) == '0')) return -1;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) < '0' || key.charAt(i) > '9') return -1;
+        }
+        int i = Integer.parseInt(key);
+        return i <= max ? i : -1;
+    }
+
+    static List<String> split(String path) {
+        List<String> out = new ArrayList<>();
+        int i = 1;
+        while (i <= path.length()) {
+            int end = path.indexOf('/', i);
+            if (end < 0) end = path.length();
+            out.add(path.substring(i, end).replace("~1", "/").replace("~0", "~"));
+            i = end + 1;
+        }
+        return out;
+    }
+}
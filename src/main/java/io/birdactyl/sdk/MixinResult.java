@@ -3,6 +3,7 @@ package io.birdactyl.sdk;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class MixinResult {
     public enum Action { NEXT, RETURN, ERROR }
@@ -10,21 +11,40 @@ public class MixinResult {
     private final Action action;
     private final Map<String, Object> output;
     private final String error;
-    private final Map<String, Object> modifiedInput;
+    private Map<String, Object> modifiedInput;
+    private final MixinPatch patch;
+    private final Supplier<Map<String, Object>> input;
     private final List<Notification> notifications;
 
     MixinResult(Action action, Map<String, Object> output, String error, Map<String, Object> modifiedInput, List<Notification> notifications) {
+        this(action, output, error, modifiedInput, null, null, notifications);
+    }
+
+    MixinResult(Action action, Map<String, Object> output, String error, MixinPatch patch, Supplier<Map<String, Object>> input, List<Notification> notifications) {
+        this(action, output, error, null, patch, input, notifications);
+    }
+
+    private MixinResult(Action action, Map<String, Object> output, String error, Map<String, Object> modifiedInput, MixinPatch patch, Supplier<Map<String, Object>> input, List<Notification> notifications) {
         this.action = action;
         this.output = output;
         this.error = error;
         this.modifiedInput = modifiedInput;
+        this.patch = patch != null && !patch.isEmpty() ? patch : null;
+        this.input = input;
         this.notifications = notifications != null ? notifications : new ArrayList<>();
     }
 
     public Action getAction() { return action; }
     public Map<String, Object> getOutput() { return output; }
     public String getError() { return error; }
-    public Map<String, Object> getModifiedInput() { return modifiedInput; }
+    public MixinPatch getPatch() { return patch; }
+
+    public Map<String, Object> getModifiedInput() {
+        if (modifiedInput == null && patch != null) {
+            modifiedInput = patch.applyTo(input.get());
+        }
+        return modifiedInput;
+    }
     public List<Notification> getNotifications() { return notifications; }
 
     public static class Notification {
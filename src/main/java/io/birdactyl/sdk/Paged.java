@@ -0,0 +1,229 @@
+package io.birdactyl.sdk;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Paged<T> implements Iterable<T> {
+    private final Fetcher<T> fetcher;
+    private final int pageSize;
+    private volatile CompletableFuture<Page<T>> first;
+
+    @FunctionalInterface
+    interface Fetcher<T> { CompletableFuture<Page<T>> fetch(int offset, int limit); }
+
+    static final class Page<T> {
+        final List<T> items;
+        final int total;
+
+        Page(List<T> items, int total) {
+            this.items = items; this.total = total;
+        }
+    }
+
+    Paged(Fetcher<T> fetcher, int pageSize) {
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+    }
+
+    private CompletableFuture<Page<T>> firstPage() {
+        CompletableFuture<Page<T>> f = first;
+        if (f == null) {
+            synchronized (this) {
+                if (first == null) first = fetcher.fetch(0, pageSize);
+                f = first;
+            }
+        }
+        return f;
+    }
+
+    private boolean last(Page<T> page, int offset) {
+        if (page.items.isEmpty()) return true;
+        if (page.total > 0) return offset + page.items.size() >= page.total;
+        return page.items.size() < pageSize;
+    }
+
+    public int total() {
+        return join(firstPage()).total;
+    }
+
+    public CompletableFuture<Integer> totalAsync() {
+        return firstPage().thenApply(p -> p.total);
+    }
+
+    public List<T> toList() {
+        List<T> out = new ArrayList<>();
+        forEach(out::add);
+        return out;
+    }
+
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private CompletableFuture<Page<T>> next = firstPage();
+            private List<T> items = Collections.emptyList();
+            private int index;
+            private int offset;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                while (index >= items.size()) {
+                    if (done || next == null) return false;
+                    Page<T> page = join(next);
+                    items = page.items;
+                    index = 0;
+                    if (last(page, offset)) {
+                        next = null;
+                        done = true;
+                    } else {
+                        offset += items.size();
+                        next = fetcher.fetch(offset, pageSize);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return items.get(index++);
+            }
+        };
+    }
+
+    public Flow.Publisher<T> publisher() {
+        return subscriber -> subscriber.onSubscribe(new PageSubscription(subscriber));
+    }
+
+    private final class PageSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private boolean finished;
+        private boolean started;
+        private boolean lastPage;
+        private CompletableFuture<Page<T>> pending;
+        private CompletableFuture<Page<T>> listening;
+        private List<T> items = Collections.emptyList();
+        private int index;
+        private int offset;
+
+        PageSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("request must be positive"));
+                return;
+            }
+            demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                while (!cancelled && !finished) {
+                    if (index < items.size()) {
+                        if (demand.get() == 0) break;
+                        demand.decrementAndGet();
+                        subscriber.onNext(items.get(index++));
+                        continue;
+                    }
+                    if (lastPage) {
+                        finished = true;
+                        subscriber.onComplete();
+                        break;
+                    }
+                    if (!started) {
+                        started = true;
+                        pending = firstPage();
+                    }
+                    if (!pending.isDone()) {
+                        if (listening != pending) {
+                            listening = pending;
+                            pending.whenComplete((p, t) -> drain());
+                        }
+                        break;
+                    }
+                    Page<T> page;
+                    try {
+                        page = join(pending);
+                    } catch (RuntimeException e) {
+                        finished = true;
+                        subscriber.onError(e);
+                        break;
+                    }
+                    items = page.items;
+                    index = 0;
+                    lastPage = last(page, offset);
+                    offset += items.size();
+                    pending = lastPage ? null : fetcher.fetch(offset, pageSize);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+
+    static <R, T> CompletableFuture<Page<T>> page(ListenableFuture<R> future, Function<R, Page<T>> mapper, Executor executor) {
+        CompletableFuture<Page<T>> cf = new CompletableFuture<>();
+        Futures.addCallback(future, new FutureCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                try {
+                    cf.complete(mapper.apply(result));
+                } catch (Exception e) {
+                    cf.completeExceptionally(e);
+                }
+            }
+            @Override
+            public void onFailure(Throwable t) {
+                cf.completeExceptionally(t);
+            }
+        }, executor);
+        return cf;
+    }
+
+    private static <T> T join(CompletableFuture<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -1,16 +1,97 @@
 package io.birdactyl.sdk;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.protobuf.ByteString;
 import io.birdactyl.sdk.proto.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
 
 public class PanelAPI {
     private static final Gson gson = new Gson();
     private final PanelServiceGrpc.PanelServiceBlockingStub stub;
+    private final PanelServiceGrpc.PanelServiceStub streamStub;
+    private PanelCache cache;
+    private SingleFlight flights;
+    private PanelServiceGrpc.PanelServiceFutureStub futureStub;
 
     public PanelAPI(PanelServiceGrpc.PanelServiceBlockingStub stub) {
+        this(stub, null);
+    }
+
+    public PanelAPI(PanelServiceGrpc.PanelServiceBlockingStub stub, PanelServiceGrpc.PanelServiceStub streamStub) {
         this.stub = stub;
+        this.streamStub = streamStub;
+    }
+
+    public PanelAPI withCache(PanelCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public PanelCache cache() {
+        return cache;
+    }
+
+    public PanelAPI withCoalescing(SingleFlight flights, PanelServiceGrpc.PanelServiceFutureStub futureStub) {
+        this.flights = flights;
+        this.futureStub = futureStub;
+        return this;
+    }
+
+    private <Q, R> R read(String method, Q request, Function<Q, R> call, BiFunction<PanelServiceGrpc.PanelServiceFutureStub, Q, ListenableFuture<R>> futureCall) {
+        if (flights == null || !flights.isEnabled(method)) return call.apply(request);
+        return SingleFlight.await(flights.call(method, request, r -> futureCall.apply(futureStub, r)));
+    }
+
+    private <Q, R, T> Paged<T> paged(String method, int pageSize, BiFunction<Integer, Integer, Q> request,
+                                     BiFunction<PanelServiceGrpc.PanelServiceFutureStub, Q, ListenableFuture<R>> rpc, Function<R, Paged.Page<T>> mapper) {
+        PanelServiceGrpc.PanelServiceFutureStub fs = futureStub != null ? futureStub : PanelServiceGrpc.newFutureStub(stub.getChannel());
+        return new Paged<>((offset, limit) -> {
+            Q req = request.apply(offset, limit);
+            ListenableFuture<R> f = flights != null ? flights.call(method, req, r -> rpc.apply(fs, r)) : rpc.apply(fs, req);
+            return Paged.page(f, mapper, MoreExecutors.directExecutor());
+        }, pageSize);
+    }
+
+    private void invalidate(PanelCache.Entity entity, String id) {
+        if (cache != null) cache.invalidate(entity, id);
+        forget(reads(entity));
+    }
+
+    private void forget(String... methods) {
+        if (flights != null) flights.forget(methods);
+    }
+
+    private <T> T forgetting(T result, String... methods) {
+        forget(methods);
+        return result;
+    }
+
+    static String[] reads(PanelCache.Entity entity) {
+        switch (entity) {
+            case SERVER: return new String[] {"getServer", "listServers", "getServerStats"};
+            case USER: return new String[] {"getUser", "getUserByEmail", "getUserByUsername", "listUsers"};
+            case NODE: return new String[] {"getNode", "listNodes"};
+            case PACKAGE: return new String[] {"getPackage", "listPackages"};
+            default: return new String[] {"getSettings"};
+        }
+    }
+
+    private PanelServiceGrpc.PanelServiceStub streamStub() {
+        if (streamStub == null) throw new IllegalStateException("streaming stub not configured");
+        return streamStub;
     }
 
     public void log(String level, String message) {
@@ -18,11 +99,12 @@ public class PanelAPI {
     }
 
     public Server getServer(String id) {
-        return new Server(stub.getServer(IDRequest.newBuilder().setId(id).build()));
+        if (cache != null) return cache.get(PanelCache.Entity.SERVER, id, () -> new Server(read("getServer", IDRequest.newBuilder().setId(id).build(), stub::getServer, PanelServiceGrpc.PanelServiceFutureStub::getServer)));
+        return new Server(read("getServer", IDRequest.newBuilder().setId(id).build(), stub::getServer, PanelServiceGrpc.PanelServiceFutureStub::getServer));
     }
 
     public List<Server> listServers() {
-        ListServersResponse resp = stub.listServers(ListServersRequest.getDefaultInstance());
+        ListServersResponse resp = read("listServers", ListServersRequest.getDefaultInstance(), stub::listServers, PanelServiceGrpc.PanelServiceFutureStub::listServers);
         List<Server> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Server s : resp.getServersList()) {
             out.add(new Server(s));
@@ -31,7 +113,7 @@ public class PanelAPI {
     }
 
     public List<Server> listServersByUser(String userId) {
-        ListServersResponse resp = stub.listServers(ListServersRequest.newBuilder().setUserId(userId).build());
+        ListServersResponse resp = read("listServers", ListServersRequest.newBuilder().setUserId(userId).build(), stub::listServers, PanelServiceGrpc.PanelServiceFutureStub::listServers);
         List<Server> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Server s : resp.getServersList()) {
             out.add(new Server(s));
@@ -39,13 +121,28 @@ public class PanelAPI {
         return out;
     }
 
+    public Paged<Server> servers(int pageSize) {
+        return servers("", "", "", "", pageSize);
+    }
+
+    public Paged<Server> servers(String userId, String nodeId, String search, String filter, int pageSize) {
+        return paged("listServers", pageSize,
+                (offset, limit) -> ListServersRequest.newBuilder().setUserId(userId).setNodeId(nodeId)
+                        .setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                PanelServiceGrpc.PanelServiceFutureStub::listServers,
+                resp -> new Paged.Page<>(map(resp.getServersList(), Server::new), resp.getTotal()));
+    }
+
     public Server createServer(String name, String userId, String nodeId, String packageId, int memory, int cpu, int disk) {
-        return new Server(stub.createServer(CreateServerRequest.newBuilder()
+        return forgetting(new Server(stub.createServer(CreateServerRequest.newBuilder()
                 .setName(name).setUserId(userId).setNodeId(nodeId).setPackageId(packageId)
-                .setMemory(memory).setCpu(cpu).setDisk(disk).build()));
+                .setMemory(memory).setCpu(cpu).setDisk(disk).build())), reads(PanelCache.Entity.SERVER));
     }
 
-    public void deleteServer(String id) { stub.deleteServer(IDRequest.newBuilder().setId(id).build()); }
+    public void deleteServer(String id) {
+        stub.deleteServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
 
     public Server updateServer(String id, String name, Integer memory, Integer cpu, Integer disk) {
         UpdateServerRequest.Builder req = UpdateServerRequest.newBuilder().setId(id);
@@ -53,22 +150,46 @@ public class PanelAPI {
         if (memory != null) req.setMemory(memory);
         if (cpu != null) req.setCpu(cpu);
         if (disk != null) req.setDisk(disk);
-        return new Server(stub.updateServer(req.build()));
+        Server server = new Server(stub.updateServer(req.build()));
+        invalidate(PanelCache.Entity.SERVER, id);
+        return server;
+    }
+    public void startServer(String id) {
+        stub.startServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void stopServer(String id) {
+        stub.stopServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void restartServer(String id) {
+        stub.restartServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void killServer(String id) {
+        stub.killServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void suspendServer(String id) {
+        stub.suspendServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void unsuspendServer(String id) {
+        stub.unsuspendServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
+    }
+    public void reinstallServer(String id) {
+        stub.reinstallServer(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.SERVER, id);
     }
-    public void startServer(String id) { stub.startServer(IDRequest.newBuilder().setId(id).build()); }
-    public void stopServer(String id) { stub.stopServer(IDRequest.newBuilder().setId(id).build()); }
-    public void restartServer(String id) { stub.restartServer(IDRequest.newBuilder().setId(id).build()); }
-    public void killServer(String id) { stub.killServer(IDRequest.newBuilder().setId(id).build()); }
-    public void suspendServer(String id) { stub.suspendServer(IDRequest.newBuilder().setId(id).build()); }
-    public void unsuspendServer(String id) { stub.unsuspendServer(IDRequest.newBuilder().setId(id).build()); }
-    public void reinstallServer(String id) { stub.reinstallServer(IDRequest.newBuilder().setId(id).build()); }
 
     public void transferServer(String serverId, String targetNodeId) {
         stub.transferServer(TransferServerRequest.newBuilder().setServerId(serverId).setTargetNodeId(targetNodeId).build());
+        invalidate(PanelCache.Entity.SERVER, serverId);
     }
 
     public List<String> getConsoleLog(String serverId, int lines) {
-        return stub.getConsoleLog(ConsoleLogRequest.newBuilder().setServerId(serverId).setLines(lines).build()).getLinesList();
+        return read("getConsoleLog", ConsoleLogRequest.newBuilder().setServerId(serverId).setLines(lines).build(), stub::getConsoleLog, PanelServiceGrpc.PanelServiceFutureStub::getConsoleLog).getLinesList();
     }
 
     public void sendCommand(String serverId, String command) {
@@ -80,8 +201,8 @@ public class PanelAPI {
     }
 
     public List<LogMatch> searchLogs(String serverId, String pattern, boolean regex, int limit) {
-        SearchLogsResponse resp = stub.searchLogs(SearchLogsRequest.newBuilder()
-                .setServerId(serverId).setPattern(pattern).setRegex(regex).setLimit(limit).build());
+        SearchLogsResponse resp = read("searchLogs", SearchLogsRequest.newBuilder()
+                .setServerId(serverId).setPattern(pattern).setRegex(regex).setLimit(limit).build(), stub::searchLogs, PanelServiceGrpc.PanelServiceFutureStub::searchLogs);
         List<LogMatch> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.LogMatch m : resp.getMatchesList()) {
             out.add(new LogMatch(m.getLine(), m.getLineNumber(), m.getTimestamp()));
@@ -90,7 +211,7 @@ public class PanelAPI {
     }
 
     public List<LogFile> listLogFiles(String serverId) {
-        LogFilesResponse resp = stub.listLogFiles(IDRequest.newBuilder().setId(serverId).build());
+        LogFilesResponse resp = read("listLogFiles", IDRequest.newBuilder().setId(serverId).build(), stub::listLogFiles, PanelServiceGrpc.PanelServiceFutureStub::listLogFiles);
         List<LogFile> out = new ArrayList<>();
         for (LogFileInfo f : resp.getFilesList()) {
             out.add(new LogFile(f.getName(), f.getSize(), f.getModified()));
@@ -102,49 +223,84 @@ public class PanelAPI {
         return stub.readLogFile(ReadLogFileRequest.newBuilder().setServerId(serverId).setFilename(filename).build()).getContent().toByteArray();
     }
 
+    public LogChunk readLogFile(String serverId, String filename, long offset, long length) {
+        return readLogChunk(ReadLogFileRequest.newBuilder().setServerId(serverId).setFilename(filename)
+                .setOffset(offset).setLength(length).setGzip(true).build());
+    }
+
+    public LogChunk tailLogFile(String serverId, String filename, long bytes) {
+        return readLogChunk(ReadLogFileRequest.newBuilder().setServerId(serverId).setFilename(filename)
+                .setTailBytes(bytes).setGzip(true).build());
+    }
+
+    public LogChunk getFullLog(String serverId, long offset, long length) {
+        return readLogFile(serverId, "", offset, length);
+    }
+
+    private LogChunk readLogChunk(ReadLogFileRequest req) {
+        FullLogResponse resp = stub.readLogFile(req);
+        byte[] content = resp.getContent().toByteArray();
+        if (resp.getGzip()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                content = in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long offset = req.getTailBytes() > 0 && resp.getOffset() == 0 ? Math.max(0, resp.getSize() - content.length) : resp.getOffset();
+        return new LogChunk(content, offset, resp.getSize(), resp.getFileId());
+    }
+
     public ServerStats getServerStats(String serverId) {
-        io.birdactyl.sdk.proto.ServerStats s = stub.getServerStats(IDRequest.newBuilder().setId(serverId).build());
+        io.birdactyl.sdk.proto.ServerStats s = read("getServerStats", IDRequest.newBuilder().setId(serverId).build(), stub::getServerStats, PanelServiceGrpc.PanelServiceFutureStub::getServerStats);
         return new ServerStats(s.getMemoryBytes(), s.getMemoryLimit(), s.getCpuPercent(), s.getDiskBytes(), s.getNetworkRx(), s.getNetworkTx(), s.getState());
     }
 
     public void addAllocation(String serverId, int port) {
         stub.addAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build());
+        invalidate(PanelCache.Entity.SERVER, serverId);
     }
 
     public void deleteAllocation(String serverId, int port) {
         stub.deleteAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build());
+        invalidate(PanelCache.Entity.SERVER, serverId);
     }
 
     public void setPrimaryAllocation(String serverId, int port) {
         stub.setPrimaryAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build());
+        invalidate(PanelCache.Entity.SERVER, serverId);
     }
 
     public void updateServerVariables(String serverId, Map<String, String> variables) {
         stub.updateServerVariables(UpdateVariablesRequest.newBuilder().setServerId(serverId).putAllVariables(variables).build());
+        invalidate(PanelCache.Entity.SERVER, serverId);
     }
 
     public void compressFiles(String serverId, List<String> paths, String destination) {
         stub.compressFiles(CompressRequest.newBuilder().setServerId(serverId).addAllPaths(paths).setDestination(destination).build());
+        forget("listFiles");
     }
 
     public void decompressFile(String serverId, String path) {
         stub.decompressFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build());
+        forget("listFiles");
     }
 
     public User getUser(String id) {
-        return new User(stub.getUser(IDRequest.newBuilder().setId(id).build()));
+        if (cache != null) return cache.get(PanelCache.Entity.USER, id, () -> new User(read("getUser", IDRequest.newBuilder().setId(id).build(), stub::getUser, PanelServiceGrpc.PanelServiceFutureStub::getUser)));
+        return new User(read("getUser", IDRequest.newBuilder().setId(id).build(), stub::getUser, PanelServiceGrpc.PanelServiceFutureStub::getUser));
     }
 
     public User getUserByEmail(String email) {
-        return new User(stub.getUserByEmail(EmailRequest.newBuilder().setEmail(email).build()));
+        return new User(read("getUserByEmail", EmailRequest.newBuilder().setEmail(email).build(), stub::getUserByEmail, PanelServiceGrpc.PanelServiceFutureStub::getUserByEmail));
     }
 
     public User getUserByUsername(String username) {
-        return new User(stub.getUserByUsername(UsernameRequest.newBuilder().setUsername(username).build()));
+        return new User(read("getUserByUsername", UsernameRequest.newBuilder().setUsername(username).build(), stub::getUserByUsername, PanelServiceGrpc.PanelServiceFutureStub::getUserByUsername));
     }
 
     public List<User> listUsers() {
-        ListUsersResponse resp = stub.listUsers(ListUsersRequest.getDefaultInstance());
+        ListUsersResponse resp = read("listUsers", ListUsersRequest.getDefaultInstance(), stub::listUsers, PanelServiceGrpc.PanelServiceFutureStub::listUsers);
         List<User> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.User u : resp.getUsersList()) {
             out.add(new User(u));
@@ -152,24 +308,55 @@ public class PanelAPI {
         return out;
     }
 
+    public Paged<User> users(int pageSize) {
+        return users("", "", pageSize);
+    }
+
+    public Paged<User> users(String search, String filter, int pageSize) {
+        return paged("listUsers", pageSize,
+                (offset, limit) -> ListUsersRequest.newBuilder().setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                PanelServiceGrpc.PanelServiceFutureStub::listUsers,
+                resp -> new Paged.Page<>(map(resp.getUsersList(), User::new), resp.getTotal()));
+    }
+
     public User createUser(String email, String username, String password) {
-        return new User(stub.createUser(CreateUserRequest.newBuilder()
-                .setEmail(email).setUsername(username).setPassword(password).build()));
+        return forgetting(new User(stub.createUser(CreateUserRequest.newBuilder()
+                .setEmail(email).setUsername(username).setPassword(password).build())), reads(PanelCache.Entity.USER));
     }
 
     public User updateUser(String id, String username, String email) {
         UpdateUserRequest.Builder req = UpdateUserRequest.newBuilder().setId(id);
         if (username != null) req.setUsername(username);
         if (email != null) req.setEmail(email);
-        return new User(stub.updateUser(req.build()));
+        User user = new User(stub.updateUser(req.build()));
+        invalidate(PanelCache.Entity.USER, id);
+        return user;
     }
 
-    public void deleteUser(String id) { stub.deleteUser(IDRequest.newBuilder().setId(id).build()); }
-    public void banUser(String id) { stub.banUser(IDRequest.newBuilder().setId(id).build()); }
-    public void unbanUser(String id) { stub.unbanUser(IDRequest.newBuilder().setId(id).build()); }
-    public void setAdmin(String id) { stub.setAdmin(IDRequest.newBuilder().setId(id).build()); }
-    public void revokeAdmin(String id) { stub.revokeAdmin(IDRequest.newBuilder().setId(id).build()); }
-    public void forcePasswordReset(String id) { stub.forcePasswordReset(IDRequest.newBuilder().setId(id).build()); }
+    public void deleteUser(String id) {
+        stub.deleteUser(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
+    public void banUser(String id) {
+        stub.banUser(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
+    public void unbanUser(String id) {
+        stub.unbanUser(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
+    public void setAdmin(String id) {
+        stub.setAdmin(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
+    public void revokeAdmin(String id) {
+        stub.revokeAdmin(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
+    public void forcePasswordReset(String id) {
+        stub.forcePasswordReset(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.USER, id);
+    }
 
     public void setUserResources(String userId, Integer ramLimit, Integer cpuLimit, Integer diskLimit, Integer serverLimit) {
         SetUserResourcesRequest.Builder req = SetUserResourcesRequest.newBuilder().setUserId(userId);
@@ -178,10 +365,11 @@ public class PanelAPI {
         if (diskLimit != null) req.setDiskLimit(diskLimit);
         if (serverLimit != null) req.setServerLimit(serverLimit);
         stub.setUserResources(req.build());
+        invalidate(PanelCache.Entity.USER, userId);
     }
 
     public List<Node> listNodes() {
-        ListNodesResponse resp = stub.listNodes(Empty.getDefaultInstance());
+        ListNodesResponse resp = read("listNodes", Empty.getDefaultInstance(), stub::listNodes, PanelServiceGrpc.PanelServiceFutureStub::listNodes);
         List<Node> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Node n : resp.getNodesList()) {
             out.add(new Node(n));
@@ -190,23 +378,28 @@ public class PanelAPI {
     }
 
     public Node getNode(String id) {
-        return new Node(stub.getNode(IDRequest.newBuilder().setId(id).build()));
+        if (cache != null) return cache.get(PanelCache.Entity.NODE, id, () -> new Node(read("getNode", IDRequest.newBuilder().setId(id).build(), stub::getNode, PanelServiceGrpc.PanelServiceFutureStub::getNode)));
+        return new Node(read("getNode", IDRequest.newBuilder().setId(id).build(), stub::getNode, PanelServiceGrpc.PanelServiceFutureStub::getNode));
     }
 
     public NodeWithToken createNode(String name, String fqdn, int port) {
         io.birdactyl.sdk.proto.NodeWithToken resp = stub.createNode(CreateNodeRequest.newBuilder()
                 .setName(name).setFqdn(fqdn).setPort(port).build());
+        forget(reads(PanelCache.Entity.NODE));
         return new NodeWithToken(new Node(resp.getNode()), resp.getToken());
     }
 
-    public void deleteNode(String id) { stub.deleteNode(IDRequest.newBuilder().setId(id).build()); }
+    public void deleteNode(String id) {
+        stub.deleteNode(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.NODE, id);
+    }
 
     public String resetNodeToken(String id) {
-        return stub.resetNodeToken(IDRequest.newBuilder().setId(id).build()).getToken();
+        return forgetting(stub.resetNodeToken(IDRequest.newBuilder().setId(id).build()).getToken(), reads(PanelCache.Entity.NODE));
     }
 
     public List<File> listFiles(String serverId, String path) {
-        ListFilesResponse resp = stub.listFiles(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build());
+        ListFilesResponse resp = read("listFiles", FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build(), stub::listFiles, PanelServiceGrpc.PanelServiceFutureStub::listFiles);
         List<File> out = new ArrayList<>();
         for (FileInfo f : resp.getFilesList()) {
             out.add(new File(f));
@@ -220,26 +413,59 @@ public class PanelAPI {
 
     public void writeFile(String serverId, String path, byte[] content) {
         stub.writeFile(WriteFileRequest.newBuilder().setServerId(serverId).setPath(path).setContent(ByteString.copyFrom(content)).build());
+        forget("listFiles");
+    }
+
+    public InputStream openFile(String serverId, String path) {
+        return openFile(serverId, path, 0);
+    }
+
+    public InputStream openFile(String serverId, String path, long offset) {
+        return openFile(serverId, path, offset, FileStreams.DEFAULT_CHUNK_SIZE, FileStreams.DEFAULT_WINDOW);
+    }
+
+    public InputStream openFile(String serverId, String path, long offset, int chunkSize, int window) {
+        return FileStreams.download(streamStub(), serverId, path, offset, chunkSize, window);
+    }
+
+    public ReadableByteChannel openFileChannel(String serverId, String path, long offset) {
+        return Channels.newChannel(openFile(serverId, path, offset));
+    }
+
+    public OutputStream createFile(String serverId, String path) {
+        return createFile(serverId, path, 0);
+    }
+
+    public OutputStream createFile(String serverId, String path, long offset) {
+        return createFile(serverId, path, offset, FileStreams.DEFAULT_CHUNK_SIZE);
+    }
+
+    public OutputStream createFile(String serverId, String path, long offset, int chunkSize) {
+        return FileStreams.upload(streamStub(), serverId, path, offset, chunkSize);
     }
 
     public void deleteFile(String serverId, String path) {
         stub.deleteFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build());
+        forget("listFiles");
     }
 
     public void createFolder(String serverId, String path) {
         stub.createFolder(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build());
+        forget("listFiles");
     }
 
     public void moveFile(String serverId, String from, String to) {
         stub.moveFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build());
+        forget("listFiles");
     }
 
     public void copyFile(String serverId, String from, String to) {
         stub.copyFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build());
+        forget("listFiles");
     }
 
     public List<Database> listDatabases(String serverId) {
-        ListDatabasesResponse resp = stub.listDatabases(IDRequest.newBuilder().setId(serverId).build());
+        ListDatabasesResponse resp = read("listDatabases", IDRequest.newBuilder().setId(serverId).build(), stub::listDatabases, PanelServiceGrpc.PanelServiceFutureStub::listDatabases);
         List<Database> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Database d : resp.getDatabasesList()) {
             out.add(new Database(d));
@@ -248,17 +474,17 @@ public class PanelAPI {
     }
 
     public Database createDatabase(String serverId, String name) {
-        return new Database(stub.createDatabase(CreateDatabaseRequest.newBuilder().setServerId(serverId).setName(name).build()));
+        return forgetting(new Database(stub.createDatabase(CreateDatabaseRequest.newBuilder().setServerId(serverId).setName(name).build())), "listDatabases");
     }
 
-    public void deleteDatabase(String id) { stub.deleteDatabase(IDRequest.newBuilder().setId(id).build()); }
+    public void deleteDatabase(String id) { stub.deleteDatabase(IDRequest.newBuilder().setId(id).build()); forget("listDatabases"); }
 
     public Database rotateDatabasePassword(String id) {
-        return new Database(stub.rotateDatabasePassword(IDRequest.newBuilder().setId(id).build()));
+        return forgetting(new Database(stub.rotateDatabasePassword(IDRequest.newBuilder().setId(id).build())), "listDatabases");
     }
 
     public List<DatabaseHost> listDatabaseHosts() {
-        ListDatabaseHostsResponse resp = stub.listDatabaseHosts(Empty.getDefaultInstance());
+        ListDatabaseHostsResponse resp = read("listDatabaseHosts", Empty.getDefaultInstance(), stub::listDatabaseHosts, PanelServiceGrpc.PanelServiceFutureStub::listDatabaseHosts);
         List<DatabaseHost> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.DatabaseHost h : resp.getHostsList()) {
             out.add(new DatabaseHost(h));
@@ -267,7 +493,7 @@ public class PanelAPI {
     }
 
     public List<Backup> listBackups(String serverId) {
-        ListBackupsResponse resp = stub.listBackups(IDRequest.newBuilder().setId(serverId).build());
+        ListBackupsResponse resp = read("listBackups", IDRequest.newBuilder().setId(serverId).build(), stub::listBackups, PanelServiceGrpc.PanelServiceFutureStub::listBackups);
         List<Backup> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Backup b : resp.getBackupsList()) {
             out.add(new Backup(b));
@@ -277,14 +503,16 @@ public class PanelAPI {
 
     public void createBackup(String serverId, String name) {
         stub.createBackup(CreateBackupRequest.newBuilder().setServerId(serverId).setName(name).build());
+        forget("listBackups");
     }
 
     public void deleteBackup(String serverId, String backupId) {
         stub.deleteBackup(DeleteBackupRequest.newBuilder().setServerId(serverId).setBackupId(backupId).build());
+        forget("listBackups");
     }
 
     public List<Package> listPackages() {
-        ListPackagesResponse resp = stub.listPackages(Empty.getDefaultInstance());
+        ListPackagesResponse resp = read("listPackages", Empty.getDefaultInstance(), stub::listPackages, PanelServiceGrpc.PanelServiceFutureStub::listPackages);
         List<Package> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Package p : resp.getPackagesList()) {
             out.add(new Package(p));
@@ -293,14 +521,15 @@ public class PanelAPI {
     }
 
     public Package getPackage(String id) {
-        return new Package(stub.getPackage(IDRequest.newBuilder().setId(id).build()));
+        if (cache != null) return cache.get(PanelCache.Entity.PACKAGE, id, () -> new Package(read("getPackage", IDRequest.newBuilder().setId(id).build(), stub::getPackage, PanelServiceGrpc.PanelServiceFutureStub::getPackage)));
+        return new Package(read("getPackage", IDRequest.newBuilder().setId(id).build(), stub::getPackage, PanelServiceGrpc.PanelServiceFutureStub::getPackage));
     }
 
     public Package createPackage(String name, String description, String dockerImage, String startupCmd, String stopCmd, String configFiles, int memory, int cpu, int disk, boolean isPublic) {
-        return new Package(stub.createPackage(CreatePackageRequest.newBuilder()
+        return forgetting(new Package(stub.createPackage(CreatePackageRequest.newBuilder()
                 .setName(name).setDescription(description).setDockerImage(dockerImage)
                 .setStartupCommand(startupCmd).setStopCommand(stopCmd).setConfigFiles(configFiles)
-                .setDefaultMemory(memory).setDefaultCpu(cpu).setDefaultDisk(disk).setIsPublic(isPublic).build()));
+                .setDefaultMemory(memory).setDefaultCpu(cpu).setDefaultDisk(disk).setIsPublic(isPublic).build())), reads(PanelCache.Entity.PACKAGE));
     }
 
     public Package updatePackage(String id, String name, String description, Integer memory, Integer cpu, Integer disk) {
@@ -310,13 +539,18 @@ public class PanelAPI {
         if (memory != null) req.setDefaultMemory(memory);
         if (cpu != null) req.setDefaultCpu(cpu);
         if (disk != null) req.setDefaultDisk(disk);
-        return new Package(stub.updatePackage(req.build()));
+        Package pkg = new Package(stub.updatePackage(req.build()));
+        invalidate(PanelCache.Entity.PACKAGE, id);
+        return pkg;
     }
 
-    public void deletePackage(String id) { stub.deletePackage(IDRequest.newBuilder().setId(id).build()); }
+    public void deletePackage(String id) {
+        stub.deletePackage(IDRequest.newBuilder().setId(id).build());
+        invalidate(PanelCache.Entity.PACKAGE, id);
+    }
 
     public List<IPBan> listIPBans() {
-        ListIPBansResponse resp = stub.listIPBans(Empty.getDefaultInstance());
+        ListIPBansResponse resp = read("listIPBans", Empty.getDefaultInstance(), stub::listIPBans, PanelServiceGrpc.PanelServiceFutureStub::listIPBans);
         List<IPBan> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.IPBan b : resp.getBansList()) {
             out.add(new IPBan(b));
@@ -325,13 +559,13 @@ public class PanelAPI {
     }
 
     public IPBan createIPBan(String ip, String reason) {
-        return new IPBan(stub.createIPBan(CreateIPBanRequest.newBuilder().setIp(ip).setReason(reason).build()));
+        return forgetting(new IPBan(stub.createIPBan(CreateIPBanRequest.newBuilder().setIp(ip).setReason(reason).build())), "listIPBans");
     }
 
-    public void deleteIPBan(String id) { stub.deleteIPBan(IDRequest.newBuilder().setId(id).build()); }
+    public void deleteIPBan(String id) { stub.deleteIPBan(IDRequest.newBuilder().setId(id).build()); forget("listIPBans"); }
 
     public List<Subuser> listSubusers(String serverId) {
-        ListSubusersResponse resp = stub.listSubusers(IDRequest.newBuilder().setId(serverId).build());
+        ListSubusersResponse resp = read("listSubusers", IDRequest.newBuilder().setId(serverId).build(), stub::listSubusers, PanelServiceGrpc.PanelServiceFutureStub::listSubusers);
         List<Subuser> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.Subuser s : resp.getSubusersList()) {
             out.add(new Subuser(s));
@@ -340,33 +574,42 @@ public class PanelAPI {
     }
 
     public Subuser addSubuser(String serverId, String email, List<String> permissions) {
-        return new Subuser(stub.addSubuser(AddSubuserRequest.newBuilder()
-                .setServerId(serverId).setEmail(email).addAllPermissions(permissions).build()));
+        return forgetting(new Subuser(stub.addSubuser(AddSubuserRequest.newBuilder()
+                .setServerId(serverId).setEmail(email).addAllPermissions(permissions).build())), "listSubusers");
     }
 
     public void updateSubuser(String serverId, String subuserId, List<String> permissions) {
         stub.updateSubuser(UpdateSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).addAllPermissions(permissions).build());
+        forget("listSubusers");
     }
 
     public void removeSubuser(String serverId, String subuserId) {
         stub.removeSubuser(RemoveSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).build());
+        forget("listSubusers");
     }
 
     public Settings getSettings() {
-        io.birdactyl.sdk.proto.Settings s = stub.getSettings(Empty.getDefaultInstance());
+        if (cache != null) return cache.get(PanelCache.Entity.SETTINGS, "", this::loadSettings);
+        return loadSettings();
+    }
+
+    private Settings loadSettings() {
+        io.birdactyl.sdk.proto.Settings s = read("getSettings", Empty.getDefaultInstance(), stub::getSettings, PanelServiceGrpc.PanelServiceFutureStub::getSettings);
         return new Settings(s.getRegistrationEnabled(), s.getServerCreationEnabled());
     }
 
     public void setRegistrationEnabled(boolean enabled) {
         stub.setRegistrationEnabled(BoolRequest.newBuilder().setValue(enabled).build());
+        invalidate(PanelCache.Entity.SETTINGS, "");
     }
 
     public void setServerCreationEnabled(boolean enabled) {
         stub.setServerCreationEnabled(BoolRequest.newBuilder().setValue(enabled).build());
+        invalidate(PanelCache.Entity.SETTINGS, "");
     }
 
     public List<ActivityLog> getActivityLogs(int limit) {
-        GetLogsResponse resp = stub.getActivityLogs(GetLogsRequest.newBuilder().setLimit(limit).build());
+        GetLogsResponse resp = read("getActivityLogs", GetLogsRequest.newBuilder().setLimit(limit).build(), stub::getActivityLogs, PanelServiceGrpc.PanelServiceFutureStub::getActivityLogs);
         List<ActivityLog> out = new ArrayList<>();
         for (io.birdactyl.sdk.proto.ActivityLog l : resp.getLogsList()) {
             out.add(new ActivityLog(l));
@@ -374,6 +617,23 @@ public class PanelAPI {
         return out;
     }
 
+    public Paged<ActivityLog> activityLogs(int pageSize) {
+        return activityLogs("", "", pageSize);
+    }
+
+    public Paged<ActivityLog> activityLogs(String search, String filter, int pageSize) {
+        return paged("getActivityLogs", pageSize,
+                (offset, limit) -> GetLogsRequest.newBuilder().setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                PanelServiceGrpc.PanelServiceFutureStub::getActivityLogs,
+                resp -> new Paged.Page<>(map(resp.getLogsList(), ActivityLog::new), resp.getTotal()));
+    }
+
+    static <P, T> List<T> map(List<P> protos, Function<P, T> ctor) {
+        List<T> out = new ArrayList<>(protos.size());
+        for (P p : protos) out.add(ctor.apply(p));
+        return out;
+    }
+
     public String getKV(String key) {
         KVResponse resp = stub.getKV(KVRequest.newBuilder().setKey(key).build());
         return resp.getFound() ? resp.getValue() : null;
@@ -383,10 +643,68 @@ public class PanelAPI {
         stub.setKV(KVSetRequest.newBuilder().setKey(key).setValue(value).build());
     }
 
+    public void setKV(String key, String value, Duration ttl) {
+        stub.setKV(KVSetRequest.newBuilder().setKey(key).setValue(value).setTtlMs(ttl.toMillis()).build());
+    }
+
     public void deleteKV(String key) {
         stub.deleteKV(KVRequest.newBuilder().setKey(key).build());
     }
 
+    public long incrementKV(String key, long delta) {
+        return stub.incrementKV(KVIncrementRequest.newBuilder().setKey(key).setDelta(delta).build()).getValue();
+    }
+
+    public long incrementKV(String key, long delta, Duration ttl) {
+        return stub.incrementKV(KVIncrementRequest.newBuilder().setKey(key).setDelta(delta).setTtlMs(ttl.toMillis()).build()).getValue();
+    }
+
+    public boolean compareAndSetKV(String key, String expected, String value) {
+        return compareAndSetKV(key, expected, value, Duration.ZERO);
+    }
+
+    public boolean compareAndSetKV(String key, String expected, String value, Duration ttl) {
+        return casKV(key, expected, value, ttl).getSwapped();
+    }
+
+    KVCompareAndSetResponse casKV(String key, String expected, String value, Duration ttl) {
+        return stub.compareAndSetKV(casRequest(key, expected, value, ttl));
+    }
+
+    static KVCompareAndSetRequest casRequest(String key, String expected, String value, Duration ttl) {
+        KVCompareAndSetRequest.Builder b = KVCompareAndSetRequest.newBuilder().setKey(key).setValue(value).setTtlMs(ttl.toMillis());
+        if (expected == null) b.setExpectAbsent(true);
+        else b.setExpected(expected);
+        return b.build();
+    }
+
+    public Map<String, String> scanKV(String prefix) {
+        return scanKV(prefix, Integer.MAX_VALUE);
+    }
+
+    public Map<String, String> scanKV(String prefix, int limit) {
+        Map<String, String> out = new LinkedHashMap<>();
+        String cursor = "";
+        do {
+            KVScanResponse resp = stub.scanKV(KVScanRequest.newBuilder().setPrefix(prefix).setCursor(cursor)
+                    .setLimit(Math.min(limit - out.size(), 1000)).build());
+            for (KVEntry e : resp.getEntriesList()) {
+                if (out.size() >= limit) break;
+                out.put(e.getKey(), e.getValue());
+            }
+            cursor = resp.getNextCursor();
+        } while (!cursor.isEmpty() && out.size() < limit);
+        return out;
+    }
+
+    public Map<String, String> getKVs(Collection<String> keys) {
+        return stub.getKVMulti(KVMultiGetRequest.newBuilder().addAllKeys(keys).build()).getValuesMap();
+    }
+
+    public void setKVs(Map<String, String> set, Collection<String> delete) {
+        stub.setKVMulti(KVMultiSetRequest.newBuilder().putAllSet(set).addAllDelete(delete).build());
+    }
+
     @SuppressWarnings("unchecked")
     public List<Map<String, Object>> queryDB(String query, String... args) {
         QueryDBResponse resp = stub.queryDB(QueryDBRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).build());
@@ -397,6 +715,22 @@ public class PanelAPI {
         return out;
     }
 
+    public DbCursor queryDBCursor(String query, String... args) {
+        return queryDBCursor(500, 4, query, args);
+    }
+
+    public DbCursor queryDBCursor(int chunkRows, int window, String query, String... args) {
+        QueryDBStreamRequest req = QueryDBStreamRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).setChunkRows(chunkRows).build();
+        return new DbCursor(streamStub(), req, Math.max(1, window),
+                () -> stub.queryDB(QueryDBRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).build()).getRowsList());
+    }
+
+    public <T> List<T> queryDB(Class<T> type, String query, String... args) {
+        try (DbCursor cursor = queryDBCursor(query, args)) {
+            return cursor.list(type);
+        }
+    }
+
     public void broadcastEvent(String eventType, Map<String, String> data) {
         stub.broadcastEvent(BroadcastEventRequest.newBuilder().setEventType(eventType).putAllData(data).build());
     }
@@ -446,6 +780,10 @@ public class PanelAPI {
             this.error = r.getError();
         }
 
+        HTTPResponse(int status, Map<String, String> headers, byte[] body, String error) {
+            this.status = status; this.headers = headers; this.body = body; this.error = error;
+        }
+
         public String bodyAsString() { return new String(body); }
     }
 
@@ -609,6 +947,18 @@ public class PanelAPI {
         }
     }
 
+    public static class LogChunk {
+        public final byte[] content;
+        public final long offset, fileSize;
+        public final String fileId;
+
+        LogChunk(byte[] content, long offset, long fileSize, String fileId) {
+            this.content = content; this.offset = offset; this.fileSize = fileSize; this.fileId = fileId;
+        }
+
+        public long end() { return offset + content.length; }
+    }
+
     public static class LogFile {
         public final String name, modified;
         public final long size;
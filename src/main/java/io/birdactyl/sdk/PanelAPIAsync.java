@@ -7,25 +7,98 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.protobuf.ByteString;
 import io.birdactyl.sdk.proto.*;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class PanelAPIAsync {
     private static final Gson gson = new Gson();
     private final PanelServiceGrpc.PanelServiceFutureStub stub;
+    private final PanelServiceGrpc.PanelServiceStub streamStub;
     private final Executor executor;
+    private PanelCache cache;
+    private SingleFlight flights;
+    private DirectHttp directHttp;
 
     public PanelAPIAsync(PanelServiceGrpc.PanelServiceFutureStub stub) {
         this(stub, MoreExecutors.directExecutor());
     }
 
     public PanelAPIAsync(PanelServiceGrpc.PanelServiceFutureStub stub, Executor executor) {
+        this(stub, null, executor);
+    }
+
+    public PanelAPIAsync(PanelServiceGrpc.PanelServiceFutureStub stub, PanelServiceGrpc.PanelServiceStub streamStub, Executor executor) {
         this.stub = stub;
+        this.streamStub = streamStub;
         this.executor = executor;
     }
 
+    public PanelAPIAsync withCache(PanelCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public PanelCache cache() {
+        return cache;
+    }
+
+    public PanelAPIAsync withCoalescing(SingleFlight flights) {
+        this.flights = flights;
+        return this;
+    }
+
+    public SingleFlight coalescing() {
+        return flights;
+    }
+
+    public PanelAPIAsync withDirectHttp(DirectHttp http) {
+        this.directHttp = http;
+        return this;
+    }
+
+    public DirectHttp directHttp() {
+        return directHttp;
+    }
+
+    private <Q, R> ListenableFuture<R> flight(String method, Q request, java.util.function.Function<Q, ListenableFuture<R>> rpc) {
+        return flights != null ? flights.call(method, request, rpc) : rpc.apply(request);
+    }
+
+    private <T> CompletableFuture<T> invalidating(CompletableFuture<T> future, PanelCache.Entity entity, String id) {
+        return future.whenComplete((v, t) -> {
+            if (cache != null) cache.invalidate(entity, id);
+            if (flights != null) flights.forget(PanelAPI.reads(entity));
+        });
+    }
+
+    private <T> CompletableFuture<T> forgetting(CompletableFuture<T> future, String... methods) {
+        if (flights == null) return future;
+        return future.whenComplete((v, t) -> flights.forget(methods));
+    }
+
+    private <Q, R, T> Paged<T> paged(String method, int pageSize, java.util.function.BiFunction<Integer, Integer, Q> request,
+                                     java.util.function.Function<Q, ListenableFuture<R>> rpc, java.util.function.Function<R, Paged.Page<T>> mapper) {
+        return new Paged<>((offset, limit) -> Paged.page(flight(method, request.apply(offset, limit), rpc), mapper, executor), pageSize);
+    }
+
+    private PanelServiceGrpc.PanelServiceStub streamStub() {
+        if (streamStub == null) throw new IllegalStateException("streaming stub not configured");
+        return streamStub;
+    }
+
     private <T, R> CompletableFuture<R> toCompletable(ListenableFuture<T> future, java.util.function.Function<T, R> mapper) {
         CompletableFuture<R> cf = new CompletableFuture<>();
         Futures.addCallback(future, new FutureCallback<T>() {
@@ -65,27 +138,47 @@ public class PanelAPIAsync {
     }
 
     public CompletableFuture<PanelAPI.Server> getServer(String id) {
-        return toCompletable(stub.getServer(IDRequest.newBuilder().setId(id).build()), PanelAPI.Server::new);
+        if (cache != null) return cache.getAsync(PanelCache.Entity.SERVER, id, () -> toCompletable(flight("getServer", IDRequest.newBuilder().setId(id).build(), stub::getServer), PanelAPI.Server::new));
+        return toCompletable(flight("getServer", IDRequest.newBuilder().setId(id).build(), stub::getServer), PanelAPI.Server::new);
     }
 
     public CompletableFuture<List<PanelAPI.Server>> listServers() {
-        return toCompletable(stub.listServers(ListServersRequest.getDefaultInstance()),
+        return toCompletable(flight("listServers", ListServersRequest.getDefaultInstance(), stub::listServers),
                 resp -> resp.getServersList().stream().map(PanelAPI.Server::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<List<PanelAPI.Server>> listServersByUser(String userId) {
-        return toCompletable(stub.listServers(ListServersRequest.newBuilder().setUserId(userId).build()),
+        return toCompletable(flight("listServers", ListServersRequest.newBuilder().setUserId(userId).build(), stub::listServers),
                 resp -> resp.getServersList().stream().map(PanelAPI.Server::new).collect(Collectors.toList()));
     }
 
+    public Paged<PanelAPI.Server> servers(int pageSize) {
+        return servers("", "", "", "", pageSize);
+    }
+
+    public Paged<PanelAPI.Server> servers(String userId, String nodeId, String search, String filter, int pageSize) {
+        return paged("listServers", pageSize,
+                (offset, limit) -> ListServersRequest.newBuilder().setUserId(userId).setNodeId(nodeId)
+                        .setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                stub::listServers, resp -> new Paged.Page<>(PanelAPI.map(resp.getServersList(), PanelAPI.Server::new), resp.getTotal()));
+    }
+
+    public <T> BulkOperation.Builder<T> bulk(BulkOperation.Action<T> action) {
+        return BulkOperation.builder(this, action);
+    }
+
+    public Flow.Publisher<PanelAPI.Server> serverPublisher(String userId, String nodeId, String search, String filter, int pageSize) {
+        return servers(userId, nodeId, search, filter, pageSize).publisher();
+    }
+
     public CompletableFuture<PanelAPI.Server> createServer(String name, String userId, String nodeId, String packageId, int memory, int cpu, int disk) {
-        return toCompletable(stub.createServer(CreateServerRequest.newBuilder()
+        return forgetting(toCompletable(stub.createServer(CreateServerRequest.newBuilder()
                 .setName(name).setUserId(userId).setNodeId(nodeId).setPackageId(packageId)
-                .setMemory(memory).setCpu(cpu).setDisk(disk).build()), PanelAPI.Server::new);
+                .setMemory(memory).setCpu(cpu).setDisk(disk).build()), PanelAPI.Server::new), PanelAPI.reads(PanelCache.Entity.SERVER));
     }
 
     public CompletableFuture<Void> deleteServer(String id) {
-        return toCompletableVoid(stub.deleteServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.deleteServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<PanelAPI.Server> updateServer(String id, String name, Integer memory, Integer cpu, Integer disk) {
@@ -94,43 +187,43 @@ public class PanelAPIAsync {
         if (memory != null) req.setMemory(memory);
         if (cpu != null) req.setCpu(cpu);
         if (disk != null) req.setDisk(disk);
-        return toCompletable(stub.updateServer(req.build()), PanelAPI.Server::new);
+        return invalidating(toCompletable(stub.updateServer(req.build()), PanelAPI.Server::new), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> startServer(String id) {
-        return toCompletableVoid(stub.startServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.startServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> stopServer(String id) {
-        return toCompletableVoid(stub.stopServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.stopServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> restartServer(String id) {
-        return toCompletableVoid(stub.restartServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.restartServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> killServer(String id) {
-        return toCompletableVoid(stub.killServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.killServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> suspendServer(String id) {
-        return toCompletableVoid(stub.suspendServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.suspendServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> unsuspendServer(String id) {
-        return toCompletableVoid(stub.unsuspendServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.unsuspendServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> reinstallServer(String id) {
-        return toCompletableVoid(stub.reinstallServer(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.reinstallServer(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.SERVER, id);
     }
 
     public CompletableFuture<Void> transferServer(String serverId, String targetNodeId) {
-        return toCompletableVoid(stub.transferServer(TransferServerRequest.newBuilder().setServerId(serverId).setTargetNodeId(targetNodeId).build()));
+        return invalidating(toCompletableVoid(stub.transferServer(TransferServerRequest.newBuilder().setServerId(serverId).setTargetNodeId(targetNodeId).build())), PanelCache.Entity.SERVER, serverId);
     }
 
     public CompletableFuture<List<String>> getConsoleLog(String serverId, int lines) {
-        return toCompletable(stub.getConsoleLog(ConsoleLogRequest.newBuilder().setServerId(serverId).setLines(lines).build()),
+        return toCompletable(flight("getConsoleLog", ConsoleLogRequest.newBuilder().setServerId(serverId).setLines(lines).build(), stub::getConsoleLog),
                 ConsoleLogResponse::getLinesList);
     }
 
@@ -139,85 +232,100 @@ public class PanelAPIAsync {
     }
 
     public CompletableFuture<PanelAPI.ServerStats> getServerStats(String serverId) {
-        return toCompletable(stub.getServerStats(IDRequest.newBuilder().setId(serverId).build()),
+        return toCompletable(flight("getServerStats", IDRequest.newBuilder().setId(serverId).build(), stub::getServerStats),
                 s -> new PanelAPI.ServerStats(s.getMemoryBytes(), s.getMemoryLimit(), s.getCpuPercent(), s.getDiskBytes(), s.getNetworkRx(), s.getNetworkTx(), s.getState()));
     }
 
     public CompletableFuture<Void> addAllocation(String serverId, int port) {
-        return toCompletableVoid(stub.addAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build()));
+        return invalidating(toCompletableVoid(stub.addAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build())), PanelCache.Entity.SERVER, serverId);
     }
 
     public CompletableFuture<Void> deleteAllocation(String serverId, int port) {
-        return toCompletableVoid(stub.deleteAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build()));
+        return invalidating(toCompletableVoid(stub.deleteAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build())), PanelCache.Entity.SERVER, serverId);
     }
 
     public CompletableFuture<Void> setPrimaryAllocation(String serverId, int port) {
-        return toCompletableVoid(stub.setPrimaryAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build()));
+        return invalidating(toCompletableVoid(stub.setPrimaryAllocation(AllocationRequest.newBuilder().setServerId(serverId).setPort(port).build())), PanelCache.Entity.SERVER, serverId);
     }
 
     public CompletableFuture<Void> updateServerVariables(String serverId, Map<String, String> variables) {
-        return toCompletableVoid(stub.updateServerVariables(UpdateVariablesRequest.newBuilder().setServerId(serverId).putAllVariables(variables).build()));
+        return invalidating(toCompletableVoid(stub.updateServerVariables(UpdateVariablesRequest.newBuilder().setServerId(serverId).putAllVariables(variables).build())), PanelCache.Entity.SERVER, serverId);
     }
 
     public CompletableFuture<Void> compressFiles(String serverId, List<String> paths, String destination) {
-        return toCompletableVoid(stub.compressFiles(CompressRequest.newBuilder().setServerId(serverId).addAllPaths(paths).setDestination(destination).build()));
+        return forgetting(toCompletableVoid(stub.compressFiles(CompressRequest.newBuilder().setServerId(serverId).addAllPaths(paths).setDestination(destination).build())), "listFiles");
     }
 
     public CompletableFuture<Void> decompressFile(String serverId, String path) {
-        return toCompletableVoid(stub.decompressFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build()));
+        return forgetting(toCompletableVoid(stub.decompressFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build())), "listFiles");
     }
 
     public CompletableFuture<PanelAPI.User> getUser(String id) {
-        return toCompletable(stub.getUser(IDRequest.newBuilder().setId(id).build()), PanelAPI.User::new);
+        if (cache != null) return cache.getAsync(PanelCache.Entity.USER, id, () -> toCompletable(flight("getUser", IDRequest.newBuilder().setId(id).build(), stub::getUser), PanelAPI.User::new));
+        return toCompletable(flight("getUser", IDRequest.newBuilder().setId(id).build(), stub::getUser), PanelAPI.User::new);
     }
 
     public CompletableFuture<PanelAPI.User> getUserByEmail(String email) {
-        return toCompletable(stub.getUserByEmail(EmailRequest.newBuilder().setEmail(email).build()), PanelAPI.User::new);
+        return toCompletable(flight("getUserByEmail", EmailRequest.newBuilder().setEmail(email).build(), stub::getUserByEmail), PanelAPI.User::new);
     }
 
     public CompletableFuture<PanelAPI.User> getUserByUsername(String username) {
-        return toCompletable(stub.getUserByUsername(UsernameRequest.newBuilder().setUsername(username).build()), PanelAPI.User::new);
+        return toCompletable(flight("getUserByUsername", UsernameRequest.newBuilder().setUsername(username).build(), stub::getUserByUsername), PanelAPI.User::new);
     }
 
     public CompletableFuture<List<PanelAPI.User>> listUsers() {
-        return toCompletable(stub.listUsers(ListUsersRequest.getDefaultInstance()),
+        return toCompletable(flight("listUsers", ListUsersRequest.getDefaultInstance(), stub::listUsers),
                 resp -> resp.getUsersList().stream().map(PanelAPI.User::new).collect(Collectors.toList()));
     }
 
+    public Paged<PanelAPI.User> users(int pageSize) {
+        return users("", "", pageSize);
+    }
+
+    public Paged<PanelAPI.User> users(String search, String filter, int pageSize) {
+        return paged("listUsers", pageSize,
+                (offset, limit) -> ListUsersRequest.newBuilder().setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                stub::listUsers, resp -> new Paged.Page<>(PanelAPI.map(resp.getUsersList(), PanelAPI.User::new), resp.getTotal()));
+    }
+
+    public Flow.Publisher<PanelAPI.User> userPublisher(String search, String filter, int pageSize) {
+        return users(search, filter, pageSize).publisher();
+    }
+
     public CompletableFuture<PanelAPI.User> createUser(String email, String username, String password) {
-        return toCompletable(stub.createUser(CreateUserRequest.newBuilder()
-                .setEmail(email).setUsername(username).setPassword(password).build()), PanelAPI.User::new);
+        return forgetting(toCompletable(stub.createUser(CreateUserRequest.newBuilder()
+                .setEmail(email).setUsername(username).setPassword(password).build()), PanelAPI.User::new), PanelAPI.reads(PanelCache.Entity.USER));
     }
 
     public CompletableFuture<PanelAPI.User> updateUser(String id, String username, String email) {
         UpdateUserRequest.Builder req = UpdateUserRequest.newBuilder().setId(id);
         if (username != null) req.setUsername(username);
         if (email != null) req.setEmail(email);
-        return toCompletable(stub.updateUser(req.build()), PanelAPI.User::new);
+        return invalidating(toCompletable(stub.updateUser(req.build()), PanelAPI.User::new), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> deleteUser(String id) {
-        return toCompletableVoid(stub.deleteUser(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.deleteUser(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> banUser(String id) {
-        return toCompletableVoid(stub.banUser(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.banUser(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> unbanUser(String id) {
-        return toCompletableVoid(stub.unbanUser(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.unbanUser(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> setAdmin(String id) {
-        return toCompletableVoid(stub.setAdmin(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.setAdmin(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> revokeAdmin(String id) {
-        return toCompletableVoid(stub.revokeAdmin(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.revokeAdmin(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> forcePasswordReset(String id) {
-        return toCompletableVoid(stub.forcePasswordReset(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.forcePasswordReset(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.USER, id);
     }
 
     public CompletableFuture<Void> setUserResources(String userId, Integer ramLimit, Integer cpuLimit, Integer diskLimit, Integer serverLimit) {
@@ -226,33 +334,34 @@ public class PanelAPIAsync {
         if (cpuLimit != null) req.setCpuLimit(cpuLimit);
         if (diskLimit != null) req.setDiskLimit(diskLimit);
         if (serverLimit != null) req.setServerLimit(serverLimit);
-        return toCompletableVoid(stub.setUserResources(req.build()));
+        return invalidating(toCompletableVoid(stub.setUserResources(req.build())), PanelCache.Entity.USER, userId);
     }
 
     public CompletableFuture<List<PanelAPI.Node>> listNodes() {
-        return toCompletable(stub.listNodes(Empty.getDefaultInstance()),
+        return toCompletable(flight("listNodes", Empty.getDefaultInstance(), stub::listNodes),
                 resp -> resp.getNodesList().stream().map(PanelAPI.Node::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<PanelAPI.Node> getNode(String id) {
-        return toCompletable(stub.getNode(IDRequest.newBuilder().setId(id).build()), PanelAPI.Node::new);
+        if (cache != null) return cache.getAsync(PanelCache.Entity.NODE, id, () -> toCompletable(flight("getNode", IDRequest.newBuilder().setId(id).build(), stub::getNode), PanelAPI.Node::new));
+        return toCompletable(flight("getNode", IDRequest.newBuilder().setId(id).build(), stub::getNode), PanelAPI.Node::new);
     }
 
     public CompletableFuture<PanelAPI.NodeWithToken> createNode(String name, String fqdn, int port) {
-        return toCompletable(stub.createNode(CreateNodeRequest.newBuilder().setName(name).setFqdn(fqdn).setPort(port).build()),
-                resp -> new PanelAPI.NodeWithToken(new PanelAPI.Node(resp.getNode()), resp.getToken()));
+        return forgetting(toCompletable(stub.createNode(CreateNodeRequest.newBuilder().setName(name).setFqdn(fqdn).setPort(port).build()),
+                resp -> new PanelAPI.NodeWithToken(new PanelAPI.Node(resp.getNode()), resp.getToken())), PanelAPI.reads(PanelCache.Entity.NODE));
     }
 
     public CompletableFuture<Void> deleteNode(String id) {
-        return toCompletableVoid(stub.deleteNode(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.deleteNode(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.NODE, id);
     }
 
     public CompletableFuture<String> resetNodeToken(String id) {
-        return toCompletable(stub.resetNodeToken(IDRequest.newBuilder().setId(id).build()), NodeToken::getToken);
+        return forgetting(toCompletable(stub.resetNodeToken(IDRequest.newBuilder().setId(id).build()), NodeToken::getToken), PanelAPI.reads(PanelCache.Entity.NODE));
     }
 
     public CompletableFuture<List<PanelAPI.File>> listFiles(String serverId, String path) {
-        return toCompletable(stub.listFiles(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build()),
+        return toCompletable(flight("listFiles", FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build(), stub::listFiles),
                 resp -> resp.getFilesList().stream().map(PanelAPI.File::new).collect(Collectors.toList()));
     }
 
@@ -262,74 +371,85 @@ public class PanelAPIAsync {
     }
 
     public CompletableFuture<Void> writeFile(String serverId, String path, byte[] content) {
-        return toCompletableVoid(stub.writeFile(WriteFileRequest.newBuilder().setServerId(serverId).setPath(path).setContent(ByteString.copyFrom(content)).build()));
+        return forgetting(toCompletableVoid(stub.writeFile(WriteFileRequest.newBuilder().setServerId(serverId).setPath(path).setContent(ByteString.copyFrom(content)).build())), "listFiles");
+    }
+
+    public CompletableFuture<Long> readFileTo(String serverId, String path, long offset, WritableByteChannel sink) {
+        return FileStreams.readTo(streamStub(), serverId, path, offset, FileStreams.DEFAULT_CHUNK_SIZE, sink, executor)
+                .whenCompleteAsync((v, t) -> {}, executor);
+    }
+
+    public CompletableFuture<Long> writeFileFrom(String serverId, String path, long offset, ReadableByteChannel source) {
+        return forgetting(FileStreams.writeFrom(streamStub(), serverId, path, offset, FileStreams.DEFAULT_CHUNK_SIZE, source, executor)
+                .whenCompleteAsync((v, t) -> {}, executor), "listFiles");
     }
 
     public CompletableFuture<Void> deleteFile(String serverId, String path) {
-        return toCompletableVoid(stub.deleteFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build()));
+        return forgetting(toCompletableVoid(stub.deleteFile(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build())), "listFiles");
     }
 
     public CompletableFuture<Void> createFolder(String serverId, String path) {
-        return toCompletableVoid(stub.createFolder(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build()));
+        return forgetting(toCompletableVoid(stub.createFolder(FilePathRequest.newBuilder().setServerId(serverId).setPath(path).build())), "listFiles");
     }
 
     public CompletableFuture<Void> moveFile(String serverId, String from, String to) {
-        return toCompletableVoid(stub.moveFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build()));
+        return forgetting(toCompletableVoid(stub.moveFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build())), "listFiles");
     }
 
     public CompletableFuture<Void> copyFile(String serverId, String from, String to) {
-        return toCompletableVoid(stub.copyFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build()));
+        return forgetting(toCompletableVoid(stub.copyFile(MoveFileRequest.newBuilder().setServerId(serverId).setFrom(from).setTo(to).build())), "listFiles");
     }
 
     public CompletableFuture<List<PanelAPI.Database>> listDatabases(String serverId) {
-        return toCompletable(stub.listDatabases(IDRequest.newBuilder().setId(serverId).build()),
+        return toCompletable(flight("listDatabases", IDRequest.newBuilder().setId(serverId).build(), stub::listDatabases),
                 resp -> resp.getDatabasesList().stream().map(PanelAPI.Database::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<PanelAPI.Database> createDatabase(String serverId, String name) {
-        return toCompletable(stub.createDatabase(CreateDatabaseRequest.newBuilder().setServerId(serverId).setName(name).build()), PanelAPI.Database::new);
+        return forgetting(toCompletable(stub.createDatabase(CreateDatabaseRequest.newBuilder().setServerId(serverId).setName(name).build()), PanelAPI.Database::new), "listDatabases");
     }
 
     public CompletableFuture<Void> deleteDatabase(String id) {
-        return toCompletableVoid(stub.deleteDatabase(IDRequest.newBuilder().setId(id).build()));
+        return forgetting(toCompletableVoid(stub.deleteDatabase(IDRequest.newBuilder().setId(id).build())), "listDatabases");
     }
 
     public CompletableFuture<PanelAPI.Database> rotateDatabasePassword(String id) {
-        return toCompletable(stub.rotateDatabasePassword(IDRequest.newBuilder().setId(id).build()), PanelAPI.Database::new);
+        return forgetting(toCompletable(stub.rotateDatabasePassword(IDRequest.newBuilder().setId(id).build()), PanelAPI.Database::new), "listDatabases");
     }
 
     public CompletableFuture<List<PanelAPI.DatabaseHost>> listDatabaseHosts() {
-        return toCompletable(stub.listDatabaseHosts(Empty.getDefaultInstance()),
+        return toCompletable(flight("listDatabaseHosts", Empty.getDefaultInstance(), stub::listDatabaseHosts),
                 resp -> resp.getHostsList().stream().map(PanelAPI.DatabaseHost::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<List<PanelAPI.Backup>> listBackups(String serverId) {
-        return toCompletable(stub.listBackups(IDRequest.newBuilder().setId(serverId).build()),
+        return toCompletable(flight("listBackups", IDRequest.newBuilder().setId(serverId).build(), stub::listBackups),
                 resp -> resp.getBackupsList().stream().map(PanelAPI.Backup::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<Void> createBackup(String serverId, String name) {
-        return toCompletableVoid(stub.createBackup(CreateBackupRequest.newBuilder().setServerId(serverId).setName(name).build()));
+        return forgetting(toCompletableVoid(stub.createBackup(CreateBackupRequest.newBuilder().setServerId(serverId).setName(name).build())), "listBackups");
     }
 
     public CompletableFuture<Void> deleteBackup(String serverId, String backupId) {
-        return toCompletableVoid(stub.deleteBackup(DeleteBackupRequest.newBuilder().setServerId(serverId).setBackupId(backupId).build()));
+        return forgetting(toCompletableVoid(stub.deleteBackup(DeleteBackupRequest.newBuilder().setServerId(serverId).setBackupId(backupId).build())), "listBackups");
     }
 
     public CompletableFuture<List<PanelAPI.Package>> listPackages() {
-        return toCompletable(stub.listPackages(Empty.getDefaultInstance()),
+        return toCompletable(flight("listPackages", Empty.getDefaultInstance(), stub::listPackages),
                 resp -> resp.getPackagesList().stream().map(PanelAPI.Package::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<PanelAPI.Package> getPackage(String id) {
-        return toCompletable(stub.getPackage(IDRequest.newBuilder().setId(id).build()), PanelAPI.Package::new);
+        if (cache != null) return cache.getAsync(PanelCache.Entity.PACKAGE, id, () -> toCompletable(flight("getPackage", IDRequest.newBuilder().setId(id).build(), stub::getPackage), PanelAPI.Package::new));
+        return toCompletable(flight("getPackage", IDRequest.newBuilder().setId(id).build(), stub::getPackage), PanelAPI.Package::new);
     }
 
     public CompletableFuture<PanelAPI.Package> createPackage(String name, String description, String dockerImage, String startupCmd, String stopCmd, String configFiles, int memory, int cpu, int disk, boolean isPublic) {
-        return toCompletable(stub.createPackage(CreatePackageRequest.newBuilder()
+        return forgetting(toCompletable(stub.createPackage(CreatePackageRequest.newBuilder()
                 .setName(name).setDescription(description).setDockerImage(dockerImage)
                 .setStartupCommand(startupCmd).setStopCommand(stopCmd).setConfigFiles(configFiles)
-                .setDefaultMemory(memory).setDefaultCpu(cpu).setDefaultDisk(disk).setIsPublic(isPublic).build()), PanelAPI.Package::new);
+                .setDefaultMemory(memory).setDefaultCpu(cpu).setDefaultDisk(disk).setIsPublic(isPublic).build()), PanelAPI.Package::new), PanelAPI.reads(PanelCache.Entity.PACKAGE));
     }
 
     public CompletableFuture<PanelAPI.Package> updatePackage(String id, String name, String description, Integer memory, Integer cpu, Integer disk) {
@@ -339,62 +459,81 @@ public class PanelAPIAsync {
         if (memory != null) req.setDefaultMemory(memory);
         if (cpu != null) req.setDefaultCpu(cpu);
         if (disk != null) req.setDefaultDisk(disk);
-        return toCompletable(stub.updatePackage(req.build()), PanelAPI.Package::new);
+        return invalidating(toCompletable(stub.updatePackage(req.build()), PanelAPI.Package::new), PanelCache.Entity.PACKAGE, id);
     }
 
     public CompletableFuture<Void> deletePackage(String id) {
-        return toCompletableVoid(stub.deletePackage(IDRequest.newBuilder().setId(id).build()));
+        return invalidating(toCompletableVoid(stub.deletePackage(IDRequest.newBuilder().setId(id).build())), PanelCache.Entity.PACKAGE, id);
     }
 
     public CompletableFuture<List<PanelAPI.IPBan>> listIPBans() {
-        return toCompletable(stub.listIPBans(Empty.getDefaultInstance()),
+        return toCompletable(flight("listIPBans", Empty.getDefaultInstance(), stub::listIPBans),
                 resp -> resp.getBansList().stream().map(PanelAPI.IPBan::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<PanelAPI.IPBan> createIPBan(String ip, String reason) {
-        return toCompletable(stub.createIPBan(CreateIPBanRequest.newBuilder().setIp(ip).setReason(reason).build()), PanelAPI.IPBan::new);
+        return forgetting(toCompletable(stub.createIPBan(CreateIPBanRequest.newBuilder().setIp(ip).setReason(reason).build()), PanelAPI.IPBan::new), "listIPBans");
     }
 
     public CompletableFuture<Void> deleteIPBan(String id) {
-        return toCompletableVoid(stub.deleteIPBan(IDRequest.newBuilder().setId(id).build()));
+        return forgetting(toCompletableVoid(stub.deleteIPBan(IDRequest.newBuilder().setId(id).build())), "listIPBans");
     }
 
     public CompletableFuture<List<PanelAPI.Subuser>> listSubusers(String serverId) {
-        return toCompletable(stub.listSubusers(IDRequest.newBuilder().setId(serverId).build()),
+        return toCompletable(flight("listSubusers", IDRequest.newBuilder().setId(serverId).build(), stub::listSubusers),
                 resp -> resp.getSubusersList().stream().map(PanelAPI.Subuser::new).collect(Collectors.toList()));
     }
 
     public CompletableFuture<PanelAPI.Subuser> addSubuser(String serverId, String email, List<String> permissions) {
-        return toCompletable(stub.addSubuser(AddSubuserRequest.newBuilder()
-                .setServerId(serverId).setEmail(email).addAllPermissions(permissions).build()), PanelAPI.Subuser::new);
+        return forgetting(toCompletable(stub.addSubuser(AddSubuserRequest.newBuilder()
+                .setServerId(serverId).setEmail(email).addAllPermissions(permissions).build()), PanelAPI.Subuser::new), "listSubusers");
     }
 
     public CompletableFuture<Void> updateSubuser(String serverId, String subuserId, List<String> permissions) {
-        return toCompletableVoid(stub.updateSubuser(UpdateSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).addAllPermissions(permissions).build()));
+        return forgetting(toCompletableVoid(stub.updateSubuser(UpdateSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).addAllPermissions(permissions).build())), "listSubusers");
     }
 
     public CompletableFuture<Void> removeSubuser(String serverId, String subuserId) {
-        return toCompletableVoid(stub.removeSubuser(RemoveSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).build()));
+        return forgetting(toCompletableVoid(stub.removeSubuser(RemoveSubuserRequest.newBuilder().setServerId(serverId).setSubuserId(subuserId).build())), "listSubusers");
     }
 
     public CompletableFuture<PanelAPI.Settings> getSettings() {
-        return toCompletable(stub.getSettings(Empty.getDefaultInstance()),
+        if (cache != null) return cache.getAsync(PanelCache.Entity.SETTINGS, "", this::loadSettings);
+        return loadSettings();
+    }
+
+    private CompletableFuture<PanelAPI.Settings> loadSettings() {
+        return toCompletable(flight("getSettings", Empty.getDefaultInstance(), stub::getSettings),
                 s -> new PanelAPI.Settings(s.getRegistrationEnabled(), s.getServerCreationEnabled()));
     }
 
     public CompletableFuture<Void> setRegistrationEnabled(boolean enabled) {
-        return toCompletableVoid(stub.setRegistrationEnabled(BoolRequest.newBuilder().setValue(enabled).build()));
+        return invalidating(toCompletableVoid(stub.setRegistrationEnabled(BoolRequest.newBuilder().setValue(enabled).build())), PanelCache.Entity.SETTINGS, "");
     }
 
     public CompletableFuture<Void> setServerCreationEnabled(boolean enabled) {
-        return toCompletableVoid(stub.setServerCreationEnabled(BoolRequest.newBuilder().setValue(enabled).build()));
+        return invalidating(toCompletableVoid(stub.setServerCreationEnabled(BoolRequest.newBuilder().setValue(enabled).build())), PanelCache.Entity.SETTINGS, "");
     }
 
     public CompletableFuture<List<PanelAPI.ActivityLog>> getActivityLogs(int limit) {
-        return toCompletable(stub.getActivityLogs(GetLogsRequest.newBuilder().setLimit(limit).build()),
+        return toCompletable(flight("getActivityLogs", GetLogsRequest.newBuilder().setLimit(limit).build(), stub::getActivityLogs),
                 resp -> resp.getLogsList().stream().map(PanelAPI.ActivityLog::new).collect(Collectors.toList()));
     }
 
+    public Paged<PanelAPI.ActivityLog> activityLogs(int pageSize) {
+        return activityLogs("", "", pageSize);
+    }
+
+    public Paged<PanelAPI.ActivityLog> activityLogs(String search, String filter, int pageSize) {
+        return paged("getActivityLogs", pageSize,
+                (offset, limit) -> GetLogsRequest.newBuilder().setSearch(search).setFilter(filter).setOffset(offset).setLimit(limit).build(),
+                stub::getActivityLogs, resp -> new Paged.Page<>(PanelAPI.map(resp.getLogsList(), PanelAPI.ActivityLog::new), resp.getTotal()));
+    }
+
+    public Flow.Publisher<PanelAPI.ActivityLog> activityLogPublisher(String search, String filter, int pageSize) {
+        return activityLogs(search, filter, pageSize).publisher();
+    }
+
     public CompletableFuture<String> getKV(String key) {
         return toCompletable(stub.getKV(KVRequest.newBuilder().setKey(key).build()),
                 resp -> resp.getFound() ? resp.getValue() : null);
@@ -404,21 +543,143 @@ public class PanelAPIAsync {
         return toCompletableVoid(stub.setKV(KVSetRequest.newBuilder().setKey(key).setValue(value).build()));
     }
 
+    public CompletableFuture<Void> setKV(String key, String value, Duration ttl) {
+        return toCompletableVoid(stub.setKV(KVSetRequest.newBuilder().setKey(key).setValue(value).setTtlMs(ttl.toMillis()).build()));
+    }
+
     public CompletableFuture<Void> deleteKV(String key) {
         return toCompletableVoid(stub.deleteKV(KVRequest.newBuilder().setKey(key).build()));
     }
 
+    public CompletableFuture<Long> incrementKV(String key, long delta) {
+        return incrementKV(key, delta, Duration.ZERO);
+    }
+
+    public CompletableFuture<Long> incrementKV(String key, long delta, Duration ttl) {
+        return toCompletable(stub.incrementKV(KVIncrementRequest.newBuilder().setKey(key).setDelta(delta).setTtlMs(ttl.toMillis()).build()),
+                KVIncrementResponse::getValue);
+    }
+
+    public CompletableFuture<Boolean> compareAndSetKV(String key, String expected, String value) {
+        return compareAndSetKV(key, expected, value, Duration.ZERO);
+    }
+
+    public CompletableFuture<Boolean> compareAndSetKV(String key, String expected, String value, Duration ttl) {
+        return toCompletable(stub.compareAndSetKV(PanelAPI.casRequest(key, expected, value, ttl)), KVCompareAndSetResponse::getSwapped);
+    }
+
+    public CompletableFuture<Map<String, String>> scanKV(String prefix) {
+        return scanKV(prefix, Integer.MAX_VALUE);
+    }
+
+    public CompletableFuture<Map<String, String>> scanKV(String prefix, int limit) {
+        return scanKV(prefix, limit, "", new LinkedHashMap<>());
+    }
+
+    private CompletableFuture<Map<String, String>> scanKV(String prefix, int limit, String cursor, Map<String, String> out) {
+        KVScanRequest req = KVScanRequest.newBuilder().setPrefix(prefix).setCursor(cursor).setLimit(Math.min(limit - out.size(), 1000)).build();
+        return toCompletable(stub.scanKV(req), resp -> resp).thenCompose(resp -> {
+            for (KVEntry e : resp.getEntriesList()) {
+                if (out.size() >= limit) break;
+                out.put(e.getKey(), e.getValue());
+            }
+            if (resp.getNextCursor().isEmpty() || out.size() >= limit) return CompletableFuture.completedFuture(out);
+            return scanKV(prefix, limit, resp.getNextCursor(), out);
+        });
+    }
+
+    public CompletableFuture<Map<String, String>> getKVs(Collection<String> keys) {
+        return toCompletable(stub.getKVMulti(KVMultiGetRequest.newBuilder().addAllKeys(keys).build()), KVMultiResponse::getValuesMap);
+    }
+
+    public CompletableFuture<Void> setKVs(Map<String, String> set, Collection<String> delete) {
+        return toCompletableVoid(stub.setKVMulti(KVMultiSetRequest.newBuilder().putAllSet(set).addAllDelete(delete).build()));
+    }
+
     @SuppressWarnings("unchecked")
     public CompletableFuture<List<Map<String, Object>>> queryDB(String query, String... args) {
         return toCompletable(stub.queryDB(QueryDBRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).build()),
                 resp -> resp.getRowsList().stream().map(row -> (Map<String, Object>) gson.fromJson(row.toStringUtf8(), Map.class)).collect(Collectors.toList()));
     }
 
+    public <T> CompletableFuture<Long> queryDBEach(Class<T> type, Consumer<T> handler, String query, String... args) {
+        return queryDBRows(row -> handler.accept(row.as(type)), query, args);
+    }
+
+    public CompletableFuture<Long> queryDBRows(Consumer<DbRow> handler, String query, String... args) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        QueryDBStreamRequest req = QueryDBStreamRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).setChunkRows(500).build();
+        streamStub().queryDBStream(req, new ClientResponseObserver<QueryDBStreamRequest, QueryDBChunk>() {
+            private final DbRow row = new DbRow();
+            private ClientCallStreamObserver<QueryDBStreamRequest> call;
+            private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+            private long count;
+            private boolean started;
+
+            @Override
+            public void beforeStart(ClientCallStreamObserver<QueryDBStreamRequest> call) {
+                this.call = call;
+                call.disableAutoRequestWithInitial(1);
+            }
+
+            @Override
+            public void onNext(QueryDBChunk chunk) {
+                started = true;
+                pending = pending.thenRunAsync(() -> {
+                    count += deliver(chunk.getRowsList());
+                    call.request(1);
+                }, executor);
+                pending.exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    call.cancel("row handler failed", cause);
+                    result.completeExceptionally(cause);
+                    return null;
+                });
+            }
+
+            private int deliver(List<ByteString> rows) {
+                for (ByteString r : rows) {
+                    row.reset(r);
+                    handler.accept(row);
+                }
+                return rows.size();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (started || Status.fromThrowable(t).getCode() != Status.Code.UNIMPLEMENTED) {
+                    pending.whenComplete((v, e) -> result.completeExceptionally(t));
+                    return;
+                }
+                toCompletable(stub.queryDB(QueryDBRequest.newBuilder().setQuery(query).addAllArgs(Arrays.asList(args)).build()),
+                        resp -> (long) deliver(resp.getRowsList())).whenComplete((n, e) -> {
+                    if (e != null) result.completeExceptionally(e);
+                    else result.complete(n);
+                });
+            }
+
+            @Override
+            public void onCompleted() {
+                pending.whenComplete((v, e) -> {
+                    if (e == null) result.complete(count);
+                });
+            }
+        });
+        return result;
+    }
+
     public CompletableFuture<Void> broadcastEvent(String eventType, Map<String, String> data) {
         return toCompletableVoid(stub.broadcastEvent(BroadcastEventRequest.newBuilder().setEventType(eventType).putAllData(data).build()));
     }
 
     public CompletableFuture<PanelAPI.HTTPResponse> http(String method, String url, Map<String, String> headers, byte[] body) {
+        if (directHttp != null) {
+            return directHttp.send(method, url, headers, body)
+                    .exceptionally(t -> {
+                        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                        return new PanelAPI.HTTPResponse(0, Collections.emptyMap(), new byte[0], cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                    });
+        }
         PluginHTTPRequest.Builder req = PluginHTTPRequest.newBuilder().setMethod(method).setUrl(url);
         if (headers != null) req.putAllHeaders(headers);
         if (body != null) req.setBody(ByteString.copyFrom(body));
@@ -441,6 +702,11 @@ public class PanelAPIAsync {
         return http("DELETE", url, headers, null);
     }
 
+    public CompletableFuture<DirectHttp.StreamResponse> httpStream(String method, String url, Map<String, String> headers, Supplier<InputStream> body) {
+        if (directHttp == null) throw new IllegalStateException("direct HTTP is not configured");
+        return directHttp.stream(method, url, headers, body);
+    }
+
     public CompletableFuture<byte[]> callPlugin(String pluginId, String method, byte[] data) {
         CallPluginRequest.Builder req = CallPluginRequest.newBuilder().setPluginId(pluginId).setMethod(method);
         if (data != null) req.setData(ByteString.copyFrom(data));
@@ -0,0 +1,209 @@
+package io.birdactyl.sdk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+public class PanelCache {
+    public enum Entity { SERVER, USER, NODE, PACKAGE, SETTINGS }
+
+    public static final List<String> DEFAULT_EVENTS = List.of(
+            MixinTargets.SERVER_CREATE, MixinTargets.SERVER_UPDATE, MixinTargets.SERVER_DELETE,
+            MixinTargets.SERVER_START, MixinTargets.SERVER_STOP, MixinTargets.SERVER_RESTART, MixinTargets.SERVER_KILL,
+            MixinTargets.SERVER_SUSPEND, MixinTargets.SERVER_UNSUSPEND, MixinTargets.SERVER_REINSTALL, MixinTargets.SERVER_TRANSFER,
+            MixinTargets.USER_CREATE, MixinTargets.USER_UPDATE, MixinTargets.USER_DELETE, MixinTargets.USER_BAN, MixinTargets.USER_UNBAN,
+            MixinTargets.NODE_CREATE, MixinTargets.NODE_DELETE,
+            MixinTargets.PACKAGE_CREATE, MixinTargets.PACKAGE_UPDATE, MixinTargets.PACKAGE_DELETE,
+            MixinTargets.SETTINGS_UPDATE);
+
+    private final Map<Entity, Cache<String, Object>> caches = new EnumMap<>(Entity.class);
+    private final Map<Entity, Cache<String, Boolean>> negatives = new EnumMap<>(Entity.class);
+    private final Map<Entity, Map<String, Object>> loading = new EnumMap<>(Entity.class);
+    private final Set<String> invalidationEvents;
+
+    private PanelCache(Builder b) {
+        this.invalidationEvents = Collections.unmodifiableSet(new LinkedHashSet<>(b.events));
+        for (Entity e : Entity.values()) {
+            Duration ttl = b.ttls.getOrDefault(e, b.defaultTtl);
+            caches.put(e, CacheBuilder.newBuilder()
+                    .maximumSize(b.maximumSize)
+                    .expireAfterWrite(ttl)
+                    .recordStats()
+                    .build());
+            negatives.put(e, CacheBuilder.newBuilder()
+                    .maximumSize(b.maximumSize)
+                    .expireAfterWrite(b.negativeTtl)
+                    .build());
+            loading.put(e, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T get(Entity entity, String id, Supplier<T> loader) {
+        if (negatives.get(entity).getIfPresent(id) != null) throw notFound(entity, id);
+        Object cached = caches.get(entity).getIfPresent(id);
+        if (cached != null) return (T) cached;
+        Object token = begin(entity, id);
+        T value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException e) {
+            fail(entity, id, token, e);
+            throw e;
+        }
+        finish(entity, id, token, value);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> getAsync(Entity entity, String id, Supplier<CompletableFuture<T>> loader) {
+        if (negatives.get(entity).getIfPresent(id) != null) return CompletableFuture.failedFuture(notFound(entity, id));
+        Object cached = caches.get(entity).getIfPresent(id);
+        if (cached != null) return CompletableFuture.completedFuture((T) cached);
+        Object token = begin(entity, id);
+        return loader.get().whenComplete((v, t) -> {
+            if (t != null) fail(entity, id, token, t instanceof CompletionException && t.getCause() != null ? t.getCause() : t);
+            else finish(entity, id, token, v);
+        });
+    }
+
+    private Object begin(Entity entity, String id) {
+        Object token = new Object();
+        loading.get(entity).put(id, token);
+        return token;
+    }
+
+    private void finish(Entity entity, String id, Object token, Object value) {
+        loading.get(entity).computeIfPresent(id, (k, current) -> {
+            if (current != token) return current;
+            if (value != null) caches.get(entity).put(id, value);
+            return null;
+        });
+    }
+
+    private void fail(Entity entity, String id, Object token, Throwable cause) {
+        loading.get(entity).computeIfPresent(id, (k, current) -> {
+            if (current != token) return current;
+            if (cause instanceof StatusRuntimeException && ((StatusRuntimeException) cause).getStatus().getCode() == Status.Code.NOT_FOUND) {
+                negatives.get(entity).put(id, Boolean.TRUE);
+            }
+            return null;
+        });
+    }
+
+    public void put(Entity entity, String id, Object value) {
+        loading.get(entity).compute(id, (k, current) -> {
+            negatives.get(entity).invalidate(id);
+            caches.get(entity).put(id, value);
+            return null;
+        });
+    }
+
+    public void invalidate(Entity entity, String id) {
+        loading.get(entity).compute(id, (k, current) -> {
+            caches.get(entity).invalidate(id);
+            negatives.get(entity).invalidate(id);
+            return null;
+        });
+    }
+
+    public void invalidateAll(Entity entity) {
+        loading.get(entity).clear();
+        caches.get(entity).invalidateAll();
+        negatives.get(entity).invalidateAll();
+    }
+
+    public void invalidateAll() {
+        for (Entity e : Entity.values()) invalidateAll(e);
+    }
+
+    public Set<String> invalidationEvents() {
+        return invalidationEvents;
+    }
+
+    public void onEvent(Event event) {
+        String type = event.getType();
+        Entity entity;
+        if (type.startsWith("server.")) entity = Entity.SERVER;
+        else if (type.startsWith("user.")) entity = Entity.USER;
+        else if (type.startsWith("node.")) entity = Entity.NODE;
+        else if (type.startsWith("package.")) entity = Entity.PACKAGE;
+        else if (type.startsWith("settings.")) entity = Entity.SETTINGS;
+        else return;
+
+        String key = entity.name().toLowerCase() + "_id";
+        String id = event.get(key);
+        if (id == null) id = event.get("id");
+        if (id == null || entity == Entity.SETTINGS) invalidateAll(entity);
+        else invalidate(entity, id);
+    }
+
+    public CacheStats stats(Entity entity) {
+        return caches.get(entity).stats();
+    }
+
+    public long hits() {
+        long n = 0;
+        for (Cache<String, Object> c : caches.values()) n += c.stats().hitCount();
+        return n;
+    }
+
+    public long misses() {
+        long n = 0;
+        for (Cache<String, Object> c : caches.values()) n += c.stats().missCount();
+        return n;
+    }
+
+    private static StatusRuntimeException notFound(Entity entity, String id) {
+        return Status.NOT_FOUND.withDescription(entity.name().toLowerCase() + " " + id + " not found (cached)").asRuntimeException();
+    }
+
+    public static class Builder {
+        private final Map<Entity, Duration> ttls = new EnumMap<>(Entity.class);
+        private final List<String> events = new ArrayList<>(DEFAULT_EVENTS);
+        private Duration defaultTtl = Duration.ofSeconds(30);
+        private Duration negativeTtl = Duration.ofSeconds(5);
+        private long maximumSize = 10_000;
+
+        public Builder ttl(Duration ttl) {
+            this.defaultTtl = ttl;
+            return this;
+        }
+
+        public Builder ttl(Entity entity, Duration ttl) {
+            ttls.put(entity, ttl);
+            return this;
+        }
+
+        public Builder negativeTtl(Duration ttl) {
+            this.negativeTtl = ttl;
+            return this;
+        }
+
+        public Builder invalidateOn(String... eventTypes) {
+            events.addAll(Arrays.asList(eventTypes));
+            return this;
+        }
+
+        public Builder maximumSize(long size) {
+            this.maximumSize = size;
+            return this;
+        }
+
+        public PanelCache build() {
+            return new PanelCache(this);
+        }
+    }
+}
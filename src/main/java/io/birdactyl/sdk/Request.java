@@ -1,27 +1,44 @@
 package io.birdactyl.sdk;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.protobuf.ByteString;
 import io.birdactyl.sdk.proto.HTTPRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Request {
     private static final Gson gson = new Gson();
+    private static final Map<Type, TypeAdapter<?>> adapters = new ConcurrentHashMap<>();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
     private final String method;
     private final String path;
     private final Map<String, String> headers;
     private final Map<String, String> query;
-    private final byte[] body;
+    private final ByteString body;
     private final String userId;
     private Map<String, String> pathParams;
 
     public Request(HTTPRequest req) {
+        this(req, null);
+    }
+
+    Request(HTTPRequest req, Map<String, String> pathParams) {
+        this.pathParams = pathParams;
         this.method = req.getMethod();
         this.path = req.getPath();
         this.headers = req.getHeadersMap();
         this.query = req.getQueryMap();
-        this.body = req.getBody().toByteArray();
+        this.body = req.getBody();
         this.userId = req.getUserId();
     }
 
@@ -29,7 +46,11 @@ public class Request {
     public String getPath() { return path; }
     public Map<String, String> getHeaders() { return headers; }
     public Map<String, String> getQuery() { return query; }
-    public byte[] getBody() { return body; }
+    public byte[] getBody() { return body.toByteArray(); }
+    public ByteString getBodyBytes() { return body; }
+    public int bodySize() { return body.size(); }
+    public InputStream bodyStream() { return body.newInput(); }
+    public ByteBuffer bodyBuffer() { return body.asReadOnlyByteBuffer(); }
     public String getUserId() { return userId; }
 
     public String header(String name) {
@@ -80,15 +101,26 @@ public class Request {
     }
 
     public String bodyString() {
-        return new String(body);
+        return body.toStringUtf8();
     }
 
-    @SuppressWarnings("unchecked")
     public Map<String, Object> json() {
-        return gson.fromJson(new String(body), Map.class);
+        return json(MAP_TYPE);
     }
 
     public <T> T json(Class<T> clazz) {
-        return gson.fromJson(new String(body), clazz);
+        return json((Type) clazz);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T json(Type type) {
+        if (body.isEmpty()) return null;
+        TypeAdapter<T> adapter = (TypeAdapter<T>) adapters.computeIfAbsent(type, t -> gson.getAdapter(TypeToken.get(t)));
+        try (JsonReader reader = gson.newJsonReader(new InputStreamReader(body.newInput(), StandardCharsets.UTF_8))) {
+            reader.setLenient(true);
+            return adapter.read(reader);
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        }
     }
 }
@@ -1,6 +1,14 @@
 package io.birdactyl.sdk;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -9,20 +17,47 @@ public class Response {
     private static final Gson gson = new Gson();
     private final int status;
     private final Map<String, String> headers;
-    private final byte[] body;
+    private final ByteString body;
 
-    private Response(int status, Map<String, String> headers, byte[] body) {
+    @FunctionalInterface
+    public interface BodyWriter { void writeTo(OutputStream out) throws IOException; }
+
+    private Response(int status, Map<String, String> headers, ByteString body) {
         this.status = status;
         this.headers = headers;
         this.body = body;
     }
 
     public static Response ok(byte[] body) {
+        return new Response(200, new HashMap<>(), UnsafeByteOperations.unsafeWrap(body));
+    }
+
+    public static Response ok(ByteBuffer body) {
+        return new Response(200, new HashMap<>(), UnsafeByteOperations.unsafeWrap(body));
+    }
+
+    public static Response ok(ByteString body) {
         return new Response(200, new HashMap<>(), body);
     }
 
     public static Response ok(String body) {
-        return new Response(200, new HashMap<>(), body.getBytes(StandardCharsets.UTF_8));
+        return new Response(200, new HashMap<>(), ByteString.copyFromUtf8(body));
+    }
+
+    public static Response write(String contentType, BodyWriter writer) {
+        BufferPool.Buffer buf = BufferPool.acquire();
+        ByteString body;
+        try {
+            writer.writeTo(buf);
+            body = buf.copy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buf.release();
+        }
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", contentType);
+        return new Response(200, headers, body);
     }
 
     public Response header(String name, String value) {
@@ -35,36 +70,41 @@ public class Response {
     }
 
     public static Response json(Object data) {
-        Map<String, Object> wrapper = new HashMap<>();
-        wrapper.put("success", true);
-        wrapper.put("data", data);
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        return new Response(200, headers, gson.toJson(wrapper).getBytes(StandardCharsets.UTF_8));
+        return envelope(200, true, "data", data);
     }
 
     public static Response error(int status, String message) {
-        Map<String, Object> wrapper = new HashMap<>();
-        wrapper.put("success", false);
-        wrapper.put("error", message);
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Content-Type", "application/json");
-        return new Response(status, headers, gson.toJson(wrapper).getBytes(StandardCharsets.UTF_8));
+        return envelope(status, false, "error", message);
+    }
+
+    private static Response envelope(int status, boolean success, String key, Object value) {
+        Response resp = write("application/json", out -> {
+            OutputStreamWriter w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            JsonWriter json = gson.newJsonWriter(w);
+            json.beginObject();
+            json.name("success").value(success);
+            json.name(key);
+            gson.toJson(value, value == null ? Object.class : value.getClass(), json);
+            json.endObject();
+            json.flush();
+        });
+        return status == 200 ? resp : resp.status(status);
     }
 
     public static Response text(String text) {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "text/plain");
-        return new Response(200, headers, text.getBytes(StandardCharsets.UTF_8));
+        return new Response(200, headers, ByteString.copyFromUtf8(text));
     }
 
     public static Response html(String html) {
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "text/html; charset=utf-8");
-        return new Response(200, headers, html.getBytes(StandardCharsets.UTF_8));
+        return new Response(200, headers, ByteString.copyFromUtf8(html));
     }
 
     public int getStatus() { return status; }
     public Map<String, String> getHeaders() { return headers; }
-    public byte[] getBody() { return body; }
+    public byte[] getBody() { return body.toByteArray(); }
+    public ByteString getBodyBytes() { return body; }
 }
@@ -0,0 +1,37 @@
+package io.birdactyl.sdk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+final class ResumeCursor {
+    private final Map<Object, Integer> boundary = new HashMap<>();
+    private Map<Object, Integer> replay;
+    private long last = -1;
+
+    synchronized boolean accept(long ts, Object text) {
+        if (replay != null) {
+            if (ts < last) return false;
+            if (ts == last) {
+                Integer n = replay.get(text);
+                if (n != null) {
+                    if (n == 1) replay.remove(text);
+                    else replay.put(text, n - 1);
+                    return false;
+                }
+            } else {
+                replay = null;
+            }
+        }
+        if (ts > last) {
+            last = ts;
+            boundary.clear();
+        }
+        if (ts == last) boundary.merge(text, 1, Integer::sum);
+        return true;
+    }
+
+    synchronized long resume() {
+        if (last >= 0) replay = new HashMap<>(boundary);
+        return last;
+    }
+}
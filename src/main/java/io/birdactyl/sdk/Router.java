@@ -0,0 +1,251 @@
+package io.birdactyl.sdk;
+
+import java.util.*;
+import java.util.function.Function;
+
+final class Router {
+    private static final String ANY = "*";
+    private final Node root = new Node();
+
+    static final class Match {
+        static final Match NOT_FOUND = new Match(null, null, null);
+
+        final Route route;
+        final String allow;
+        final Function<Request, Response> handler;
+
+        Match(Route route, String allow, Function<Request, Response> handler) {
+            this.route = route; this.allow = allow; this.handler = handler;
+        }
+
+        boolean found() { return handler != null; }
+        boolean methodNotAllowed() { return handler == null && allow != null; }
+    }
+
+    static final class Route {
+        final String pattern;
+        final String[] paramNames;
+        final int[] paramSegments;
+        final String tailParam;
+        final int tailSegment;
+
+        Route(String pattern, String[] paramNames, int[] paramSegments, String tailParam, int tailSegment) {
+            this.pattern = pattern; this.paramNames = paramNames; this.paramSegments = paramSegments;
+            this.tailParam = tailParam; this.tailSegment = tailSegment;
+        }
+
+        Map<String, String> extract(String path) {
+            if (paramNames.length == 0 && tailParam == null) return null;
+            Map<String, String> out = new HashMap<>(paramNames.length + 2);
+            int len = path.length();
+            int seg = 0, p = 0, i = 0;
+            while (true) {
+                while (i < len && path.charAt(i) == '/') i++;
+                if (i >= len) break;
+                if (tailParam != null && seg == tailSegment) {
+                    out.put(tailParam, path.substring(i));
+                    return out;
+                }
+                int end = path.indexOf('/', i);
+                if (end < 0) end = len;
+                if (p < paramSegments.length && paramSegments[p] == seg) {
+                    out.put(paramNames[p++], path.substring(i, end));
+                }
+                seg++;
+                i = end;
+            }
+            if (tailParam != null) out.put(tailParam, "");
+            return out;
+        }
+    }
+
+    private static final class Node {
+        volatile String[] staticKeys = new String[0];
+        volatile Node[] staticChildren = new Node[0];
+        volatile Node param;
+        volatile Node wildcard;
+        volatile Endpoint endpoint;
+        volatile Endpoint tail;
+        volatile Prefix[] prefixes = new Prefix[0];
+
+        Node staticChild(String key) {
+            String[] keys = staticKeys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) return staticChildren[i];
+            }
+            Node child = new Node();
+            String[] nk = Arrays.copyOf(keys, keys.length + 1);
+            Node[] nc = Arrays.copyOf(staticChildren, keys.length + 1);
+            nk[keys.length] = key;
+            nc[keys.length] = child;
+            staticChildren = nc;
+            staticKeys = nk;
+            return child;
+        }
+
+        Node findStatic(String path, int start, int end) {
+            String[] keys = staticKeys;
+            Node[] children = staticChildren;
+            int n = Math.min(keys.length, children.length);
+            int len = end - start;
+            for (int i = 0; i < n; i++) {
+                String k = keys[i];
+                if (k.length() == len && path.regionMatches(start, k, 0, len)) return children[i];
+            }
+            return null;
+        }
+    }
+
+    private static final class Prefix {
+        final String key;
+        final Endpoint endpoint;
+
+        Prefix(String key, Endpoint endpoint) {
+            this.key = key; this.endpoint = endpoint;
+        }
+    }
+
+    private static final class Endpoint {
+        final Route route;
+        final Map<String, Function<Request, Response>> handlers;
+        final Map<String, Match> matches = new HashMap<>();
+        final Match notAllowed;
+
+        Endpoint(Route route, Map<String, Function<Request, Response>> handlers) {
+            this.route = route;
+            this.handlers = handlers;
+            for (Map.Entry<String, Function<Request, Response>> e : handlers.entrySet()) {
+                matches.put(e.getKey(), new Match(route, null, e.getValue()));
+            }
+            if (!matches.containsKey("HEAD") && matches.containsKey("GET")) {
+                matches.put("HEAD", matches.get("GET"));
+            }
+            this.notAllowed = new Match(route, String.join(", ", new TreeSet<>(handlers.keySet())), null);
+        }
+
+        Endpoint with(String method, Function<Request, Response> handler) {
+            Map<String, Function<Request, Response>> next = new HashMap<>(handlers);
+            next.put(method, handler);
+            return new Endpoint(route, next);
+        }
+
+        Match match(String method) {
+            Match m = matches.get(method);
+            return m != null ? m : matches.get(ANY);
+        }
+    }
+
+    synchronized void add(String method, String pattern, Function<Request, Response> handler) {
+        List<String> names = new ArrayList<>();
+        List<Integer> segments = new ArrayList<>();
+        String tailParam = null;
+        int tailSegment = -1;
+        boolean tailRoute = false;
+        String prefix = null;
+
+        String[] parts = pattern.split("/");
+        List<String> segs = new ArrayList<>();
+        for (String part : parts) {
+            if (!part.isEmpty()) segs.add(part);
+        }
+
+        Node node = root;
+        for (int i = 0; i < segs.size(); i++) {
+            String seg = segs.get(i);
+            boolean last = i == segs.size() - 1;
+            if (seg.startsWith(":")) {
+                if (node.param == null) node.param = new Node();
+                node = node.param;
+                names.add(seg.substring(1));
+                segments.add(i);
+            } else if (seg.equals("*") && !last) {
+                if (node.wildcard == null) node.wildcard = new Node();
+                node = node.wildcard;
+            } else if (seg.startsWith("*") && last) {
+                tailRoute = true;
+                tailSegment = i;
+                if (seg.length() > 1) tailParam = seg.substring(1);
+            } else if (seg.endsWith("*") && last) {
+                prefix = seg.substring(0, seg.length() - 1);
+            } else {
+                node = node.staticChild(seg);
+            }
+        }
+
+        int[] segIdx = new int[segments.size()];
+        for (int i = 0; i < segIdx.length; i++) segIdx[i] = segments.get(i);
+        Route route = new Route(pattern, names.toArray(new String[0]), segIdx, tailParam, tailSegment);
+
+        if (prefix != null) {
+            Prefix[] current = node.prefixes;
+            Prefix[] next = Arrays.copyOf(current, current.length + 1);
+            int at = current.length;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].key.equals(prefix)) {
+                    next = current.clone();
+                    at = i;
+                    break;
+                }
+            }
+            Endpoint existing = at < current.length ? current[at].endpoint : null;
+            next[at] = new Prefix(prefix, existing == null ? new Endpoint(route, Map.of(method, handler)) : existing.with(method, handler));
+            node.prefixes = next;
+        } else if (tailRoute) {
+            node.tail = node.tail == null ? new Endpoint(route, Map.of(method, handler)) : node.tail.with(method, handler);
+        } else {
+            node.endpoint = node.endpoint == null ? new Endpoint(route, Map.of(method, handler)) : node.endpoint.with(method, handler);
+        }
+    }
+
+    Match match(String method, String path) {
+        Endpoint ep = find(root, path, 0, path.length(), method, null);
+        if (ep == null) return Match.NOT_FOUND;
+        Match m = ep.match(method);
+        return m != null ? m : ep.notAllowed;
+    }
+
+    private Endpoint find(Node node, String path, int i, int len, String method, Endpoint fallback) {
+        int start = i;
+        while (i < len && path.charAt(i) == '/') i++;
+
+        if (i >= len) {
+            Endpoint ep = node.endpoint;
+            if (ep != null && ep.match(method) != null) return ep;
+            if (ep != null && fallback == null) fallback = ep;
+            Endpoint tail = i > start ? node.tail : null;
+            if (tail != null && tail.match(method) != null) return tail;
+            return tail != null && fallback == null ? tail : fallback;
+        }
+
+        int end = path.indexOf('/', i);
+        if (end < 0) end = len;
+
+        Node child = node.findStatic(path, i, end);
+        if (child != null) {
+            Endpoint ep = find(child, path, end, len, method, fallback);
+            if (ep != null && ep.match(method) != null) return ep;
+            fallback = ep;
+        }
+        if (node.param != null) {
+            Endpoint ep = find(node.param, path, end, len, method, fallback);
+            if (ep != null && ep.match(method) != null) return ep;
+            fallback = ep;
+        }
+        if (node.wildcard != null) {
+            Endpoint ep = find(node.wildcard, path, end, len, method, fallback);
+            if (ep != null && ep.match(method) != null) return ep;
+            fallback = ep;
+        }
+        for (Prefix p : node.prefixes) {
+            if (!path.startsWith(p.key, i)) continue;
+            if (p.endpoint.match(method) != null) return p.endpoint;
+            if (fallback == null) fallback = p.endpoint;
+        }
+        Endpoint tail = node.tail;
+        if (tail != null) {
+            if (tail.match(method) != null) return tail;
+            if (fallback == null) fallback = tail;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,103 @@
+package io.birdactyl.sdk;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+public class SingleFlight {
+    private final Map<Key, ListenableFuture<?>> inflight = new ConcurrentHashMap<>();
+    private final Set<String> disabled = ConcurrentHashMap.newKeySet();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    private static final class Key {
+        final String method;
+        final Object request;
+        final int hash;
+
+        Key(String method, Object request) {
+            this.method = method;
+            this.request = request;
+            this.hash = 31 * method.hashCode() + request.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return hash == k.hash && method.equals(k.method) && Objects.equals(request, k.request);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+    }
+
+    public SingleFlight setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public SingleFlight disable(String method) {
+        disabled.add(method);
+        return this;
+    }
+
+    public SingleFlight enable(String method) {
+        disabled.remove(method);
+        return this;
+    }
+
+    public boolean isEnabled(String method) {
+        return enabled && !disabled.contains(method);
+    }
+
+    public void forget(String... methods) {
+        Set<String> names = Set.of(methods);
+        inflight.keySet().removeIf(k -> names.contains(k.method));
+    }
+
+    public int inFlight() { return inflight.size(); }
+    public long calls() { return calls.get(); }
+    public long shared() { return shared.get(); }
+
+    @SuppressWarnings("unchecked")
+    <Q, R> ListenableFuture<R> call(String method, Q request, Function<Q, ListenableFuture<R>> rpc) {
+        if (!isEnabled(method)) return rpc.apply(request);
+        calls.incrementAndGet();
+        Key key = new Key(method, request);
+        SettableFuture<R> mine = SettableFuture.create();
+        ListenableFuture<R> existing = (ListenableFuture<R>) inflight.putIfAbsent(key, mine);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return Futures.nonCancellationPropagating(existing);
+        }
+        mine.addListener(() -> inflight.remove(key, mine), MoreExecutors.directExecutor());
+        try {
+            mine.setFuture(rpc.apply(request));
+        } catch (RuntimeException e) {
+            mine.setException(e);
+        }
+        return Futures.nonCancellationPropagating(mine);
+    }
+
+    static <R> R await(ListenableFuture<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw io.grpc.Status.CANCELLED.withDescription("interrupted").withCause(e).asRuntimeException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
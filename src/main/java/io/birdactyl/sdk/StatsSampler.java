@@ -0,0 +1,248 @@
+package io.birdactyl.sdk;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class StatsSampler {
+    public enum Metric { MEMORY, CPU, DISK, NETWORK_RX, NETWORK_TX }
+
+    private static final int METRICS = Metric.values().length;
+
+    private final PanelAPIAsync api;
+    private final Duration interval;
+    private final int window;
+    private final int maxInFlight;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private ScheduledExecutorService timer;
+
+    private static final class Series {
+        final long[] times;
+        final double[] values;
+        final double[] averages = new double[METRICS];
+        final double[] p95 = new double[METRICS];
+        final double[] scratch;
+        int head, count;
+        String state = "";
+        boolean inFlight;
+
+        Series(int window) {
+            times = new long[window];
+            values = new double[window * METRICS];
+            scratch = new double[window];
+            Arrays.fill(averages, Double.NaN);
+            Arrays.fill(p95, Double.NaN);
+        }
+
+        synchronized void add(long time, PanelAPI.ServerStats s) {
+            int cap = times.length;
+            int slot = head;
+            times[slot] = time;
+            int base = slot * METRICS;
+            values[base] = s.memoryBytes;
+            values[base + 1] = s.cpuPercent;
+            values[base + 2] = s.diskBytes;
+            values[base + 3] = s.networkRx;
+            values[base + 4] = s.networkTx;
+            state = s.state;
+            head = (head + 1) % cap;
+            if (count < cap) count++;
+            for (int m = 0; m < METRICS; m++) {
+                double sum = 0;
+                for (int i = 0; i < count; i++) {
+                    double v = values[i * METRICS + m];
+                    scratch[i] = v;
+                    sum += v;
+                }
+                averages[m] = sum / count;
+                Arrays.sort(scratch, 0, count);
+                p95[m] = scratch[(int) Math.ceil(0.95 * count) - 1];
+            }
+        }
+
+        private int slot(int back) {
+            return ((head - 1 - back) % times.length + times.length) % times.length;
+        }
+
+        synchronized double latest(int m) {
+            return count == 0 ? Double.NaN : values[slot(0) * METRICS + m];
+        }
+
+        synchronized double rate(int m) {
+            if (count < 2) return Double.NaN;
+            int a = slot(0), b = slot(1);
+            long dt = times[a] - times[b];
+            return dt <= 0 ? Double.NaN : (values[a * METRICS + m] - values[b * METRICS + m]) * 1000.0 / dt;
+        }
+
+        synchronized long lastSampleAt() {
+            return count == 0 ? 0 : times[slot(0)];
+        }
+    }
+
+    private StatsSampler(Builder b) {
+        this.api = b.api;
+        this.interval = b.interval;
+        this.window = b.window;
+        this.maxInFlight = b.maxInFlight;
+    }
+
+    public static Builder builder(PanelAPIAsync api) {
+        return new Builder(api);
+    }
+
+    public StatsSampler track(String... serverIds) {
+        for (String id : serverIds) series.computeIfAbsent(id, k -> new Series(window));
+        return this;
+    }
+
+    public StatsSampler track(Collection<String> serverIds) {
+        for (String id : serverIds) series.computeIfAbsent(id, k -> new Series(window));
+        return this;
+    }
+
+    public StatsSampler untrack(String serverId) {
+        series.remove(serverId);
+        return this;
+    }
+
+    public Set<String> tracked() {
+        return Collections.unmodifiableSet(series.keySet());
+    }
+
+    public synchronized StatsSampler start() {
+        if (timer != null) return this;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "birdactyl-stats-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private void sample() {
+        Iterator<Map.Entry<String, Series>> it = new ArrayList<>(series.entrySet()).iterator();
+        for (int i = 0; i < maxInFlight; i++) next(it);
+    }
+
+    private void next(Iterator<Map.Entry<String, Series>> it) {
+        Map.Entry<String, Series> e;
+        synchronized (it) {
+            do {
+                if (!it.hasNext()) return;
+                e = it.next();
+            } while (!claim(e.getValue()));
+        }
+        String id = e.getKey();
+        Series s = e.getValue();
+        CompletableFuture<PanelAPI.ServerStats> f;
+        try {
+            f = api.getServerStats(id);
+        } catch (RuntimeException ex) {
+            f = CompletableFuture.failedFuture(ex);
+        }
+        f.whenComplete((stats, err) -> {
+            synchronized (s) {
+                s.inFlight = false;
+            }
+            if (err != null) {
+                errors.incrementAndGet();
+            } else {
+                s.add(System.currentTimeMillis(), stats);
+                samples.incrementAndGet();
+            }
+            next(it);
+        });
+    }
+
+    private static boolean claim(Series s) {
+        synchronized (s) {
+            if (s.inFlight) return false;
+            s.inFlight = true;
+            return true;
+        }
+    }
+
+    public double latest(String serverId, Metric metric) {
+        Series s = series.get(serverId);
+        return s == null ? Double.NaN : s.latest(metric.ordinal());
+    }
+
+    public double average(String serverId, Metric metric) {
+        Series s = series.get(serverId);
+        if (s == null) return Double.NaN;
+        synchronized (s) {
+            return s.averages[metric.ordinal()];
+        }
+    }
+
+    public double p95(String serverId, Metric metric) {
+        Series s = series.get(serverId);
+        if (s == null) return Double.NaN;
+        synchronized (s) {
+            return s.p95[metric.ordinal()];
+        }
+    }
+
+    public double ratePerSecond(String serverId, Metric metric) {
+        Series s = series.get(serverId);
+        return s == null ? Double.NaN : s.rate(metric.ordinal());
+    }
+
+    public String state(String serverId) {
+        Series s = series.get(serverId);
+        if (s == null) return null;
+        synchronized (s) {
+            return s.count == 0 ? null : s.state;
+        }
+    }
+
+    public long lastSampleAt(String serverId) {
+        Series s = series.get(serverId);
+        return s == null ? 0 : s.lastSampleAt();
+    }
+
+    public long samples() { return samples.get(); }
+    public long errors() { return errors.get(); }
+
+    public static class Builder {
+        private final PanelAPIAsync api;
+        private Duration interval = Duration.ofSeconds(5);
+        private int window = 60;
+        private int maxInFlight = 16;
+
+        Builder(PanelAPIAsync api) {
+            this.api = api;
+        }
+
+        public Builder interval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Builder window(int samples) {
+            this.window = Math.max(1, samples);
+            return this;
+        }
+
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+            return this;
+        }
+
+        public StatsSampler build() {
+            return new StatsSampler(this);
+        }
+    }
+}